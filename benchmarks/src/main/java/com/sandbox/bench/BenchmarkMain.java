@@ -0,0 +1,28 @@
+package com.sandbox.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Einstieg des Benchmark-JARs: wie org.openjdk.jmh.Main aber schreibt die Ergebnisse
+ * standardmäßig als JSON (jmh-result.json) damit Läufe verschiedener Versionen
+ * verglichen werden können Eigene -rf/-rff Angaben haben Vorrang
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(List.of(args));
+        if (!options.contains("-rf")) {
+            options.add("-rf");
+            options.add("json");
+        }
+        if (!options.contains("-rff")) {
+            options.add("-rff");
+            options.add(System.getProperty("sandbox.bench.result", "jmh-result.json"));
+        }
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+}
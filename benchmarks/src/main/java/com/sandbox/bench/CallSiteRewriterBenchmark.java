@@ -0,0 +1,108 @@
+package com.sandbox.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Zusatzkosten der Methoden-Regeln pro definierter Klasse
+ *
+ *   none  keine blockedMethods, findClass nimmt die Bytes unverändert
+ *   miss  Regeln vorhanden aber keine Klasse ruft sie auf (nur Konstantenpool-Scan)
+ *   hit   jede Klasse ruft Arrays.toString auf und wird umgeschrieben
+ *
+ * rewrite misst nur den Umschreiber, define zusätzlich defineClass in einem frischen Loader
+ * Alle Werte gelten pro Klasse
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CallSiteRewriterBenchmark {
+
+    // Synthetische Klassen plus synth.Main
+    private static final int CLASSES = 1001;
+
+    @Param({"none", "miss", "hit"})
+    public String rules;
+
+    private final List<String> names = new ArrayList<>();
+    private final List<ByteBuffer> classes = new ArrayList<>();
+    private Function<ByteBuffer, byte[]> rewriter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        try (Closeable source = Sandbox.openClassSource(SyntheticClasses.directory(CLASSES - 1))) {
+            Sandbox.readAll(source).forEach((name, classBytes) -> {
+                names.add(name);
+                classes.add(classBytes);
+            });
+        }
+        rewriter = switch (rules) {
+            case "none" -> null;
+            case "miss" -> Sandbox.callSiteRewriter(List.of("java.lang.Runtime.exec", "java.lang.System.exit"));
+            case "hit" -> Sandbox.callSiteRewriter(List.of("java.util.Arrays.toString", "java.lang.System.exit"));
+            default -> throw new IllegalArgumentException(rules);
+        };
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CLASSES)
+    public void rewrite(Blackhole bh) {
+        for (ByteBuffer classBytes : classes) {
+            bh.consume(transform(classBytes));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CLASSES)
+    public void define(Blackhole bh) {
+        DefiningLoader loader = new DefiningLoader();
+        for (int i = 0; i < CLASSES; i++) {
+            bh.consume(loader.define(names.get(i), transform(classes.get(i))));
+        }
+    }
+
+    private ByteBuffer transform(ByteBuffer classBytes) {
+        if (rewriter == null) {
+            return classBytes.duplicate();
+        }
+        byte[] rewritten = rewriter.apply(classBytes);
+        return rewritten == null ? classBytes.duplicate() : ByteBuffer.wrap(rewritten);
+    }
+
+    /**
+     * Definiert nur ohne Policy damit ausschließlich das Parsen der Klasse gemessen wird
+     */
+    private static final class DefiningLoader extends ClassLoader {
+
+        DefiningLoader() {
+            super(Sandbox.type("SandboxGuard").getClassLoader());
+        }
+
+        Class<?> define(String name, ByteBuffer classBytes) {
+            return defineClass(name, classBytes, null);
+        }
+    }
+}
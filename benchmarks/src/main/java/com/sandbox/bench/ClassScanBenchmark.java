@@ -0,0 +1,61 @@
+package com.sandbox.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durchsatz von ClassScanner beim Lesen aller Klassen aus Verzeichnis und JAR
+ * sequentiell (parallelism=1) gegen parallel auf virtuellen Threads
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassScanBenchmark {
+
+    @Param({"1000", "10000"})
+    public int classes;
+
+    @Param({"dir", "jar"})
+    public String layout;
+
+    @Param({"1", "8"})
+    public int parallelism;
+
+    private Closeable source;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Path path = layout.equals("jar") ? SyntheticClasses.jar(classes) : SyntheticClasses.directory(classes);
+        source = Sandbox.openClassSource(path);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        source.close();
+    }
+
+    @Benchmark
+    public long scanAll(Blackhole bh) {
+        return Sandbox.scanAll(source, parallelism, bh::consume);
+    }
+}
@@ -0,0 +1,66 @@
+package com.sandbox.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsen einer config.json inklusive Aufbau des PolicyMatcher
+ *
+ * "default" ist die mitgelieferte config.json sonst eine erzeugte mit N Regeln
+ * (halb Klassen, halb Pakete, jede zehnte Regel ein Muster)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigParseBenchmark {
+
+    @Param({"default", "1000", "10000"})
+    public String rules;
+
+    private byte[] content;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (rules.equals("default")) {
+            content = Files.readAllBytes(Paths.get(System.getProperty("sandbox.config", "../config.json")));
+            return;
+        }
+        int count = Integer.parseInt(rules);
+        StringBuilder classes = new StringBuilder();
+        StringBuilder packages = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            StringBuilder target = i % 2 == 0 ? classes : packages;
+            if (!target.isEmpty()) {
+                target.append(',');
+            }
+            String rule = i % 10 == 0 ? "com.vendor" + i + ".*.internal" : "com.vendor" + i + ".api";
+            target.append('"').append(i % 2 == 0 ? rule + ".Client" : rule).append('"');
+        }
+        content = ("{\"blockedClasses\":[" + classes + "],\"blockedPackages\":[" + packages + "]}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Object parse() {
+        return Sandbox.securityPolicy(content, "benchmark");
+    }
+}
@@ -0,0 +1,105 @@
+package com.sandbox.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durchsatz von loadClass für Benutzerklassen, erlaubte JDK-Klassen und blockierte Namen
+ * mit 1, 4 und allen verfügbaren Threads auf demselben Loader
+ *
+ * Nach dem Warmup sind alle Namen entschieden gemessen wird also der Weg über den
+ * Entscheidungs-Cache bzw. bei blocked das Werfen der ClassNotFoundException
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadClassBenchmark {
+
+    private static final int USER_CLASSES = 1000;
+
+    @Param({"user", "parent", "blocked"})
+    public String kind;
+
+    private ClassLoader loader;
+    private String[] names;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        loader = Sandbox.newLoader(SyntheticClasses.directory(USER_CLASSES),
+                Paths.get(System.getProperty("sandbox.config", "../config.json")));
+        List<String> list = new ArrayList<>();
+        switch (kind) {
+            case "user" -> {
+                for (int i = 0; i < USER_CLASSES; i++) {
+                    list.add("synth.p" + (i / 100) + ".C" + i);
+                }
+            }
+            case "parent" -> list.addAll(List.of("java.lang.String", "java.util.ArrayList", "java.util.HashMap",
+                    "java.lang.StringBuilder", "java.util.concurrent.ConcurrentHashMap", "java.lang.Math",
+                    "java.util.Arrays", "java.lang.Integer"));
+            case "blocked" -> list.addAll(List.of("java.io.File", "java.net.Socket", "java.lang.Runtime",
+                    "java.lang.reflect.Method", "java.lang.instrument.Instrumentation", "sun.misc.Unsafe"));
+            default -> throw new IllegalArgumentException(kind);
+        }
+        names = list.toArray(new String[0]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        ((Closeable) loader).close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object oneThread(Cursor cursor) {
+        return load(cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object fourThreads(Cursor cursor) {
+        return load(cursor);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object maxThreads(Cursor cursor) {
+        return load(cursor);
+    }
+
+    private Object load(Cursor cursor) {
+        String name = names[cursor.next++ % names.length];
+        try {
+            return loader.loadClass(name);
+        } catch (ClassNotFoundException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.sandbox.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kosten für das Erstellen eines BlockingClassLoader (Policy holen + Index bauen)
+ * aus Verzeichnis und JAR bei verschiedenen Größen
+ *
+ * Bei JARs wird nach dem ersten Durchlauf der Bytecode-Cache getroffen gemessen wird
+ * also der Normalfall wiederholt eingereichter Artefakte
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoaderConstructionBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int classes;
+
+    @Param({"dir", "jar"})
+    public String layout;
+
+    private Path userCode;
+    private Path config;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        userCode = layout.equals("jar") ? SyntheticClasses.jar(classes) : SyntheticClasses.directory(classes);
+        config = Paths.get(System.getProperty("sandbox.config", "../config.json"));
+    }
+
+    @Benchmark
+    public ClassLoader construct() throws IOException {
+        ClassLoader loader = Sandbox.newLoader(userCode, config);
+        ((Closeable) loader).close();
+        return loader;
+    }
+}
@@ -0,0 +1,80 @@
+package com.sandbox.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latenz eines kompletten Sandbox-Laufs für ein triviales Programm
+ *
+ *   inProcess  Main.main in einer warmen JVM (wie ein Auftrag im Server-Modus ohne Socket)
+ *   forkedJvm  java -jar cclsandbox.jar als eigener Prozess inklusive JVM-Start
+ *
+ * source=classes startet vorkompilierte Klassen, source=java kompiliert im Speicher
+ * (nach dem ersten Lauf aus dem Compile-Cache) forkedJvm braucht das gebaute
+ * Haupt-JAR (-Dsandbox.jar, Standard ../target/cclsandbox.jar)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MainRunBenchmark {
+
+    @Param({"classes", "java"})
+    public String source;
+
+    private String[] args;
+    private String[] command;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Path program = SyntheticClasses.trivialProgram(source.equals("classes"));
+        Path config = Paths.get(System.getProperty("sandbox.config", "../config.json")).toAbsolutePath();
+        args = new String[]{"pathfrom=" + program, "main-class=Trivial", "config=" + config, "log=none"};
+
+        Path jar = Paths.get(System.getProperty("sandbox.jar", "../target/cclsandbox.jar")).toAbsolutePath();
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        command = new String[]{java, "-jar", jar.toString(), args[0], args[1], args[2], args[3]};
+        if (!Files.isRegularFile(jar)) {
+            command = null;
+        }
+    }
+
+    @Benchmark
+    public void inProcess() {
+        Sandbox.runMain(args);
+    }
+
+    @Benchmark
+    public int forkedJvm() throws IOException, InterruptedException {
+        if (command == null) {
+            throw new IllegalStateException("Main jar not found build it with 'mvn package' in the project root");
+        }
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException("Sandbox run failed with exit code " + exitCode);
+        }
+        return exitCode;
+    }
+}
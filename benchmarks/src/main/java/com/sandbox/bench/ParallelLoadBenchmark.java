@@ -0,0 +1,115 @@
+package com.sandbox.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kaltes Laden vieler Benutzerklassen mit mehreren Threads auf einem frischen Loader
+ *
+ * Jeder Aufruf lädt alle CLASSES Klassen (definieren plus die JDK-Klassen ihrer
+ * Signaturen) verteilt auf 'threads' Threads Mit "shared" laden alle Threads alle Namen
+ * in versetzter Reihenfolge und treffen sich so auch auf denselben Namen
+ * Skaliert das Laden mit den Kernen sinkt die Zeit pro Aufruf mit der Thread-Zahl
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelLoadBenchmark {
+
+    private static final int CLASSES = 2000;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"split", "shared"})
+    public String names;
+
+    private Path userCode;
+    private Path config;
+    private String[] classNames;
+    private ExecutorService executor;
+    private ClassLoader loader;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        userCode = SyntheticClasses.directory(CLASSES);
+        config = Paths.get(System.getProperty("sandbox.config", "../config.json"));
+        classNames = new String[CLASSES];
+        for (int i = 0; i < CLASSES; i++) {
+            classNames[i] = "synth.p" + (i / 100) + ".C" + i;
+        }
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    @Setup(Level.Invocation)
+    public void newLoader() {
+        loader = Sandbox.newLoader(userCode, config);
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeLoader() throws IOException {
+        ((Closeable) loader).close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public int loadAll() throws Exception {
+        boolean shared = names.equals("shared");
+        List<Future<Integer>> parts = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            parts.add(executor.submit(() -> shared ? loadShifted(worker) : loadSlice(worker)));
+        }
+        int loaded = 0;
+        for (Future<Integer> part : parts) {
+            loaded += part.get();
+        }
+        return loaded;
+    }
+
+    private int loadSlice(int worker) throws ClassNotFoundException {
+        int loaded = 0;
+        for (int i = worker; i < CLASSES; i += threads) {
+            loader.loadClass(classNames[i]);
+            loaded++;
+        }
+        return loaded;
+    }
+
+    private int loadShifted(int worker) throws ClassNotFoundException {
+        int offset = worker * CLASSES / threads;
+        for (int i = 0; i < CLASSES; i++) {
+            loader.loadClass(classNames[(offset + i) % CLASSES]);
+        }
+        return CLASSES;
+    }
+}
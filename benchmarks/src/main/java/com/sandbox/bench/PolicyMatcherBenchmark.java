@@ -0,0 +1,100 @@
+package com.sandbox.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Vergleicht den kompilierten PolicyMatcher mit der früheren linearen Schleife
+ * aus BlockingClassLoader.isBlocked bei 10/100/1000 Regeln
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PolicyMatcherBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int rules;
+
+    private Set<String> blockedClasses;
+    private Set<String> blockedPackages;
+    private Predicate<String> matcher;
+    private String[] names;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        blockedClasses = new HashSet<>();
+        blockedPackages = new HashSet<>();
+        // Halb Klassen- halb Paketregeln damit beide Pfade belastet werden
+        for (int i = 0; i < rules; i++) {
+            if (i % 2 == 0) {
+                blockedClasses.add("com.vendor" + i + ".api.Client");
+            } else {
+                blockedPackages.add("com.vendor" + i + ".internal");
+            }
+        }
+        blockedClasses.add("java.io.File");
+        blockedPackages.add("java.lang.instrument");
+        matcher = Sandbox.policyMatcher(blockedClasses, blockedPackages, List.of());
+
+        List<String> sample = new ArrayList<>(List.of(
+                "java.lang.String",
+                "java.util.ArrayList",
+                "java.util.concurrent.ConcurrentHashMap",
+                "java.io.File",
+                "java.lang.instrument.Instrumentation",
+                "com.example.user.Main"));
+        sample.add("com.vendor" + (rules - 1) + ".internal.Impl");
+        sample.add("com.vendor" + (rules - 2) + ".api.Client");
+        names = sample.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public void linearScan(Blackhole bh) {
+        for (String name : names) {
+            bh.consume(linearIsBlocked(name));
+        }
+    }
+
+    @Benchmark
+    public void compiledMatcher(Blackhole bh) {
+        for (String name : names) {
+            bh.consume(matcher.test(name));
+        }
+    }
+
+    /**
+     * Die ursprüngliche Implementierung aus BlockingClassLoader
+     */
+    private boolean linearIsBlocked(String name) {
+        if (blockedClasses.contains(name)) {
+            return true;
+        }
+        for (String pkg : blockedPackages) {
+            if (name.startsWith(pkg + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
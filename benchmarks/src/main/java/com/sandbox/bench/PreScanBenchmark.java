@@ -0,0 +1,58 @@
+package com.sandbox.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dauer der statischen Vorabprüfung (Konstantenpool-Scan + Policy) über große JARs
+ *
+ * Die Konfiguration wird über -Dsandbox.config gesetzt (Standard ../config.json)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PreScanBenchmark {
+
+    @Param({"1000", "10000"})
+    public int classes;
+
+    private Closeable source;
+    private Object policy;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        source = Sandbox.openClassSource(SyntheticClasses.jar(classes));
+        Path config = Paths.get(System.getProperty("sandbox.config", "../config.json"));
+        policy = Sandbox.securityPolicy(config);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        source.close();
+    }
+
+    @Benchmark
+    public int preScan() {
+        return Sandbox.preScan(source, policy);
+    }
+}
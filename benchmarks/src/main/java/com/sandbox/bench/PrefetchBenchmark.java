@@ -0,0 +1,112 @@
+package com.sandbox.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Zeit bis zur ersten Ausgabezeile eines Programms mit vielen Klassen auf einem frischen Loader
+ *
+ * synth.Main ruft die Kette C0 -> C1 -> ... auf und gibt erst danach seine einzige Zeile
+ * aus Ohne prefetch liest definiert und verifiziert der Lauf jede Klasse selbst wenn er sie
+ * erreicht Mit prefetch erledigt das ClassPrefetcher parallel im Hintergrund sobald die
+ * Main-Klasse feststeht Der Gewinn wächst mit der Zahl der Kerne
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrefetchBenchmark {
+
+    @Param({"200", "1000"})
+    public int classes;
+
+    @Param({"false", "true"})
+    public boolean prefetch;
+
+    private Path userCode;
+    private Path config;
+    private ClassLoader loader;
+    private PrintStream originalOut;
+    private FirstLine firstLine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        userCode = SyntheticClasses.directory(classes);
+        config = Paths.get(System.getProperty("sandbox.config", "../config.json"));
+        originalOut = System.out;
+        firstLine = new FirstLine();
+        System.setOut(new PrintStream(firstLine, true));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Setup(Level.Invocation)
+    public void newLoader() {
+        loader = Sandbox.newLoader(userCode, config);
+        firstLine.at = 0;
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeLoader() throws IOException {
+        ((Closeable) loader).close();
+    }
+
+    @Benchmark
+    public long untilFirstLine() throws Exception {
+        long start = System.nanoTime();
+        if (prefetch) {
+            Sandbox.prefetch(loader, SyntheticClasses.MAIN_CLASS);
+        }
+        Method main = loader.loadClass(SyntheticClasses.MAIN_CLASS).getMethod("main", String[].class);
+        main.invoke(null, (Object) new String[0]);
+        if (firstLine.at == 0) {
+            throw new IllegalStateException("synth.Main printed nothing");
+        }
+        return firstLine.at - start;
+    }
+
+    /**
+     * Verwirft die Ausgabe und merkt sich den Zeitpunkt des ersten Bytes
+     */
+    private static final class FirstLine extends OutputStream {
+
+        volatile long at;
+
+        @Override
+        public void write(int b) {
+            if (at == 0) {
+                at = System.nanoTime();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            write(0);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.sandbox.bench;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LoggerContext;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Zugriff auf die Sandbox-Klassen aus dem Default-Package
+ *
+ * Klassen ohne Package lassen sich aus einem benannten Package nicht importieren
+ * deshalb wird alles hier einmalig per Reflection aufgelöst Gemessen wird danach
+ * nur über JDK-Interfaces (Predicate, ClassLoader) ohne Reflection im Hot Path
+ */
+final class Sandbox {
+
+    private static final String BENCH_LOG_CONFIG = "log4j2-bench.xml";
+
+    private static final Map<String, Method> staticMethods = new ConcurrentHashMap<>();
+
+    static {
+        // Log-Ausgaben der Sandbox würden sonst mitgemessen die JMH-Ausgabe fluten und
+        // cclsandbox.log bzw. Dateien pro Auftrag anlegen log4j2-bench.xml hat nur einen
+        // Null-Appender Die Property greift solange Log4j noch nicht initialisiert ist (die
+        // Sandbox-Klassen werden erst hier geladen) sonst wird der Kontext umgestellt
+        if (!Boolean.getBoolean("sandbox.bench.log")) {
+            System.setProperty("log4j2.configurationFile", BENCH_LOG_CONFIG);
+            LoggerContext context = (LoggerContext) LogManager.getContext(type("SecurityPolicy").getClassLoader(), false);
+            if (!"sandbox-bench".equals(context.getConfiguration().getName())) {
+                try {
+                    context.setConfigLocation(Sandbox.class.getResource("/" + BENCH_LOG_CONFIG).toURI());
+                } catch (URISyntaxException e) {
+                    throw new IllegalStateException(BENCH_LOG_CONFIG, e);
+                }
+            }
+        }
+    }
+
+    private Sandbox() {
+    }
+
+    static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Sandbox class not on benchmark classpath: " + name, e);
+        }
+    }
+
+    static Object invokeStatic(String className, String method, Class<?>[] types, Object... args) {
+        try {
+            String key = className + "." + method + Arrays.toString(types);
+            Method m = staticMethods.get(key);
+            if (m == null) {
+                m = type(className).getDeclaredMethod(method, types);
+                m.setAccessible(true);
+                staticMethods.put(key, m);
+            }
+            return m.invoke(null, args);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(className + "." + method, e);
+        }
+    }
+
+    static Object invoke(Object target, String method, Class<?>[] types, Object... args) {
+        try {
+            Method m = findMethod(target.getClass(), method, types);
+            m.setAccessible(true);
+            return m.invoke(target, args);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(target.getClass().getName() + "." + method, e);
+        }
+    }
+
+    private static Method findMethod(Class<?> type, String method, Class<?>[] types)
+            throws NoSuchMethodException {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            try {
+                return c.getDeclaredMethod(method, types);
+            } catch (NoSuchMethodException e) {
+                // in Interfaces und Oberklassen weitersuchen
+            }
+            for (Class<?> i : c.getInterfaces()) {
+                try {
+                    return i.getMethod(method, types);
+                } catch (NoSuchMethodException e) {
+                    // nächstes Interface
+                }
+            }
+        }
+        throw new NoSuchMethodException(type.getName() + "." + method);
+    }
+
+    /**
+     * Öffnet eine ClassSource (Verzeichnis oder JAR)
+     */
+    static Closeable openClassSource(Path path) {
+        return (Closeable) invokeStatic("ClassSource", "open", new Class<?>[]{Path.class}, path);
+    }
+
+    /**
+     * Liest alle Klassen einer ClassSource über ClassScanner und liefert die gelesenen Bytes
+     */
+    static long scanAll(Closeable source, int parallelism, Consumer<ByteBuffer> sink) {
+        Class<?> visitorType = type("ClassScanner$Visitor");
+        Object visitor = Proxy.newProxyInstance(visitorType.getClassLoader(), new Class<?>[]{visitorType},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("visit")) {
+                        sink.accept((ByteBuffer) args[1]);
+                    }
+                    return null;
+                });
+        Object stats = invokeStatic("ClassScanner", "scan",
+                new Class<?>[]{type("ClassSource"), int.class, visitorType}, source, parallelism, visitor);
+        return (Long) invoke(stats, "bytes", new Class<?>[0]);
+    }
+
+    /**
+     * Parst eine config.json zu einem SecurityPolicy-Objekt
+     */
+    static Object securityPolicy(Path config) {
+        try {
+            return securityPolicy(Files.readAllBytes(config), config.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static Object securityPolicy(byte[] content, String source) {
+        return invokeStatic("SecurityPolicy", "parse", new Class<?>[]{byte[].class, String.class}, content, source);
+    }
+
+    /**
+     * Neuer BlockingClassLoader über den öffentlichen Konstruktor (Verzeichnis oder JAR)
+     */
+    static ClassLoader newLoader(Path userCode, Path config) {
+        try {
+            return (ClassLoader) type("BlockingClassLoader")
+                    .getConstructor(ClassLoader.class, String.class, String.class)
+                    .newInstance(ClassLoader.getSystemClassLoader(), userCode.toString(), config.toString());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BlockingClassLoader", e);
+        }
+    }
+
+    /**
+     * Startet das Vorladen der von mainClass erreichbaren Klassen (prefetch=true) kehrt sofort zurück
+     */
+    static void prefetch(ClassLoader loader, String mainClass) {
+        invoke(loader, "prefetch", new Class<?>[]{String.class}, mainClass);
+    }
+
+    /**
+     * Ruft Main.main mit den gegebenen Argumenten im selben Prozess auf
+     */
+    static void runMain(String... args) {
+        invokeStatic("Main", "main", new Class<?>[]{String[].class}, (Object) args);
+    }
+
+    /**
+     * JVM-Optionen für einen Start mit dem CDS-Archiv bzw. AOT-Cache aus mode=cds
+     */
+    @SuppressWarnings("unchecked")
+    static List<String> cdsLaunchOptions(Path archive) {
+        return (List<String>) invokeStatic("CdsArchive", "launchOptions", new Class<?>[]{Path.class}, archive);
+    }
+
+    /**
+     * Statische Vorabprüfung (PreScan) liefert die Anzahl gefundener Verstöße
+     */
+    static int preScan(Closeable source, Object securityPolicy) {
+        Object report = invokeStatic("PreScan", "scan",
+                new Class<?>[]{type("ClassSource"), type("SecurityPolicy")}, source, securityPolicy);
+        return (Integer) invoke(report, "violationCount", new Class<?>[0]);
+    }
+
+    /**
+     * Liest alle Klassen einer ClassSource als Kopie (Binärname -> Bytes)
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, ByteBuffer> readAll(Closeable source) {
+        Map<String, ByteBuffer> classes = new TreeMap<>();
+        for (String name : (Set<String>) invoke(source, "classNames", new Class<?>[0])) {
+            ByteBuffer classBytes = (ByteBuffer) invoke(source, "read", new Class<?>[]{String.class}, name);
+            ByteBuffer copy = ByteBuffer.allocate(classBytes.remaining()).put(classBytes).flip();
+            classes.put(name, copy.asReadOnlyBuffer());
+        }
+        return classes;
+    }
+
+    /**
+     * Umschreiber für die angegebenen blockierten Methoden ("java.lang.Runtime.exec")
+     * Liefert null wenn eine Klasse unverändert bleibt
+     */
+    static Function<ByteBuffer, byte[]> callSiteRewriter(Iterable<String> blockedMethods) {
+        Object builder = invokeStatic("MethodRules", "builder", new Class<?>[0]);
+        for (String rule : blockedMethods) {
+            invoke(builder, "block", new Class<?>[]{String.class}, rule);
+        }
+        Object rules = invoke(builder, "build", new Class<?>[0]);
+        try {
+            Method rewrite = type("CallSiteRewriter").getDeclaredMethod("rewrite", ByteBuffer.class, type("MethodRules"));
+            rewrite.setAccessible(true);
+            return classBytes -> {
+                try {
+                    return (byte[]) rewrite.invoke(null, classBytes, rules);
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("CallSiteRewriter.rewrite", e);
+                }
+            };
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("CallSiteRewriter.rewrite", e);
+        }
+    }
+
+    /**
+     * Baut einen PolicyMatcher aus Block-/Allow-Regeln
+     */
+    @SuppressWarnings("unchecked")
+    static Predicate<String> policyMatcher(Iterable<String> blockedClasses, Iterable<String> blockedPackages,
+                                           Iterable<String> allowedPackages) {
+        Object builder = invokeStatic("PolicyMatcher", "builder", new Class<?>[0]);
+        Class<?>[] stringArg = {String.class};
+        for (String rule : blockedClasses) {
+            invoke(builder, "blockClass", stringArg, rule);
+        }
+        for (String rule : blockedPackages) {
+            invoke(builder, "blockPackage", stringArg, rule);
+        }
+        for (String rule : allowedPackages) {
+            invoke(builder, "allowPackage", stringArg, rule);
+        }
+        return (Predicate<String>) invoke(builder, "build", new Class<?>[0]);
+    }
+}
@@ -0,0 +1,181 @@
+package com.sandbox.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Zeit bis TestApp fertig ist je nach Startart
+ *
+ *   cold        java -jar cclsandbox.jar ohne Archiv
+ *   cds         dasselbe mit dem Archiv aus mode=cds (vorab einmal pro Trial aufgenommen)
+ *   server      ein Auftrag an einen laufenden Server-Modus (ohne JVM-Start)
+ *   supervisor  ein Auftrag an mode=supervisor läuft in einer vorgestarteten Worker-JVM
+ *               (worker-jobs hoch genug dass während der Messung nichts recycelt wird)
+ *
+ * Jede Messung ist ein einzelner Lauf (SingleShotTime) damit JIT und Caches der
+ * gemessenen JVM nichts verfälschen Die Läufe arbeiten in einem temporären Verzeichnis
+ * TestApp legt dort Dateien an Braucht das gebaute Haupt-JAR (-Dsandbox.jar) und die
+ * Testklassen (-Dsandbox.testapp, Standard ../target/test-classes)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StartupBenchmark {
+
+    @Param({"cold", "cds", "server", "supervisor"})
+    public String launch;
+
+    private Path workDir;
+    private List<String> runArgs;
+    private List<String> command;
+    private Process server;
+    private Socket socket;
+    private BufferedReader responses;
+    private int jobs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Path jar = Paths.get(System.getProperty("sandbox.jar", "../target/cclsandbox.jar")).toAbsolutePath();
+        Path testApp = Paths.get(System.getProperty("sandbox.testapp", "../target/test-classes")).toAbsolutePath();
+        Path config = Paths.get(System.getProperty("sandbox.config", "../config.json")).toAbsolutePath();
+        if (!Files.isRegularFile(jar) || !Files.isDirectory(testApp)) {
+            throw new IllegalStateException("Main jar or TestApp not found build them with 'mvn package' in the project root");
+        }
+        workDir = Files.createTempDirectory("sandbox-startup-");
+        runArgs = List.of("pathfrom=" + testApp, "main-class=TestApp", "config=" + config, "log=none");
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+
+        command = new ArrayList<>(List.of(java));
+        switch (launch) {
+            case "cds" -> {
+                Path archive = workDir.resolve("cclsandbox.jsa");
+                List<String> record = new ArrayList<>(List.of(java, "-jar", jar.toString(), "mode=cds",
+                        "cds-archive=" + archive));
+                record.addAll(runArgs);
+                if (exec(record) != 0) {
+                    throw new IllegalStateException("Recording the CDS archive failed");
+                }
+                command.addAll(Sandbox.cdsLaunchOptions(archive));
+            }
+            case "server" -> startServer(java, jar, "mode=server");
+            case "supervisor" -> startServer(java, jar, "mode=supervisor", "workers=1", "worker-jobs=1000");
+            default -> {
+            }
+        }
+        command.addAll(List.of("-jar", jar.toString()));
+        command.addAll(runArgs);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (socket != null) {
+            socket.close();
+        }
+        if (server != null) {
+            server.destroy();
+        }
+        try (Stream<Path> files = Files.walk(workDir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public int run() throws IOException, InterruptedException {
+        if (server != null) {
+            return submit();
+        }
+        int exitCode = exec(command);
+        if (exitCode != 0) {
+            throw new IllegalStateException("Sandbox run failed with exit code " + exitCode);
+        }
+        return exitCode;
+    }
+
+    private int exec(List<String> cmd) throws IOException, InterruptedException {
+        return new ProcessBuilder(cmd)
+                .directory(workDir.toFile())
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start()
+                .waitFor();
+    }
+
+    private void startServer(String java, Path jar, String... mode) throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = probe.getLocalPort();
+        }
+        List<String> cmd = new ArrayList<>(List.of(java, "-jar", jar.toString()));
+        cmd.addAll(List.of(mode));
+        cmd.addAll(List.of("port=" + port, "log=none"));
+        server = new ProcessBuilder(cmd)
+                .directory(workDir.toFile())
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (socket == null) {
+            try {
+                socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            } catch (IOException e) {
+                if (System.nanoTime() > deadline || !server.isAlive()) {
+                    throw new IllegalStateException("Sandbox server did not start", e);
+                }
+                Thread.sleep(50);
+            }
+        }
+        responses = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private int submit() throws IOException {
+        StringBuilder job = new StringBuilder("{\"id\":\"").append(++jobs).append('"');
+        // log gilt im Server-Modus für den ganzen Prozess
+        for (String arg : runArgs.subList(0, runArgs.size() - 1)) {
+            int eq = arg.indexOf('=');
+            job.append(",\"").append(arg, 0, eq).append("\":\"")
+                    .append(arg.substring(eq + 1).replace("\\", "\\\\")).append('"');
+        }
+        job.append("}\n");
+        OutputStream out = socket.getOutputStream();
+        out.write(job.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        String response = responses.readLine();
+        if (response == null || !response.contains("\"status\":\"OK\"")) {
+            throw new IllegalStateException("Sandbox job failed: " + response);
+        }
+        return response.length();
+    }
+}
@@ -0,0 +1,149 @@
+package com.sandbox.bench;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * Erzeugt synthetische Benutzerprogramme mit einer festen Anzahl Klassen
+ *
+ * Die Klassen rufen sich in einer Kette auf (synth.Main -> C0 -> C1 -> ...) damit
+ * ein Lauf wirklich jede Klasse lädt Ergebnisse werden im Temp-Verzeichnis
+ * gecacht weil javac für große Mengen einige Sekunden braucht
+ */
+final class SyntheticClasses {
+
+    static final String MAIN_CLASS = "synth.Main";
+    private static final int CLASSES_PER_PACKAGE = 100;
+
+    private SyntheticClasses() {
+    }
+
+    /**
+     * Verzeichnis mit 'count' kompilierten Klassen (plus synth.Main)
+     */
+    static Path directory(int count) {
+        Path base = Paths.get(System.getProperty("java.io.tmpdir"), "sandbox-bench", "classes-" + count);
+        Path classes = base.resolve("classes");
+        if (Files.isRegularFile(base.resolve("done"))) {
+            return classes;
+        }
+        try {
+            Path sources = base.resolve("src");
+            Files.createDirectories(sources);
+            Files.createDirectories(classes);
+            List<String> files = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                files.add(write(sources, "synth.p" + (i / CLASSES_PER_PACKAGE), "C" + i, classSource(i, count)));
+            }
+            files.add(write(sources, "synth", "Main", mainSource(count)));
+
+            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            List<String> args = new ArrayList<>(List.of("-d", classes.toString(), "-nowarn"));
+            args.addAll(files);
+            if (compiler.run(null, null, null, args.toArray(new String[0])) != 0) {
+                throw new IllegalStateException("Could not compile synthetic classes");
+            }
+            Files.writeString(base.resolve("done"), "");
+            return classes;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Dieselben Klassen als JAR-Datei
+     */
+    static Path jar(int count) {
+        Path classes = directory(count);
+        Path jar = classes.getParent().resolve("classes.jar");
+        if (Files.isRegularFile(jar)) {
+            return jar;
+        }
+        try (OutputStream out = Files.newOutputStream(jar);
+             JarOutputStream jos = new JarOutputStream(out);
+             Stream<Path> stream = Files.walk(classes)) {
+            for (Path file : (Iterable<Path>) stream.filter(Files::isRegularFile)::iterator) {
+                jos.putNextEntry(new JarEntry(classes.relativize(file).toString().replace('\\', '/')));
+                jos.write(Files.readAllBytes(file));
+                jos.closeEntry();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return jar;
+    }
+
+    /**
+     * Ein triviales Programm "Trivial" als Quellverzeichnis (compiled=false) oder
+     * als Verzeichnis mit der kompilierten Klasse
+     */
+    static Path trivialProgram(boolean compiled) {
+        Path base = Paths.get(System.getProperty("java.io.tmpdir"), "sandbox-bench", "trivial");
+        Path sources = base.resolve("src");
+        Path classes = base.resolve("classes");
+        try {
+            if (!Files.isRegularFile(base.resolve("done"))) {
+                String file = write(sources, "", "Trivial",
+                        "public class Trivial {\n"
+                        + "    public static void main(String[] args) {\n"
+                        + "        int sum = 0;\n"
+                        + "        for (String arg : args) { sum += arg.length(); }\n"
+                        + "        if (sum < 0) { System.out.println(sum); }\n"
+                        + "    }\n"
+                        + "}\n");
+                Files.createDirectories(classes);
+                if (ToolProvider.getSystemJavaCompiler().run(null, null, null, "-d", classes.toString(), file) != 0) {
+                    throw new IllegalStateException("Could not compile trivial program");
+                }
+                Files.writeString(base.resolve("done"), "");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compiled ? classes : sources;
+    }
+
+    private static String write(Path sources, String pkg, String name, String code) throws IOException {
+        Path file = sources.resolve(pkg.replace('.', '/')).resolve(name + ".java");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, code);
+        return file.toString();
+    }
+
+    private static String classSource(int i, int count) {
+        String next = i + 1 < count
+                ? "synth.p" + ((i + 1) / CLASSES_PER_PACKAGE) + ".C" + (i + 1) + ".run(x + " + i + ")"
+                : "x";
+        return "package synth.p" + (i / CLASSES_PER_PACKAGE) + ";\n"
+                + "public class C" + i + " {\n"
+                + "    private final int[] data = new int[16];\n"
+                + "    public static int run(int x) { return new C" + i + "().mix(" + next + "); }\n"
+                + "    int mix(int x) {\n"
+                + "        for (int j = 0; j < data.length; j++) { data[j] = x ^ (j * 31); x += data[j]; }\n"
+                + "        return x;\n"
+                + "    }\n"
+                + "    @Override public String toString() { return \"C" + i + "\" + java.util.Arrays.toString(data); }\n"
+                + "}\n";
+    }
+
+    private static String mainSource(int count) {
+        String call = count > 0 ? "synth.p0.C0.run(1)" : "1";
+        return "package synth;\n"
+                + "public class Main {\n"
+                + "    public static void main(String[] args) {\n"
+                + "        System.out.println(\"result \" + " + call + ");\n"
+                + "    }\n"
+                + "}\n";
+    }
+}
@@ -1,185 +1,260 @@
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.json.JSONArray;
-import org.json.JSONObject;
-import org.json.JSONTokener;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
-import java.util.stream.Stream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Ein eigener ClassLoader der bestimmte Klassen/Pakete blockiert und
  * Code aus einem Verzeichnis ODER einer JAR-Datei lädt
+ *
+ * Beim Erstellen wird nur ein Index der Benutzerklassen gebaut die Bytes
+ * werden erst gelesen wenn eine Klasse wirklich gebraucht wird
+ *
+ * Der Loader ist parallel-fähig: getClassLoadingLock liefert pro Klassenname ein eigenes
+ * Lock-Objekt statt des Loaders selbst Threads die verschiedene Klassen laden warten also
+ * nicht aufeinander Ein fester Satz Lock-Streifen wäre hier falsch: defineClass lädt die
+ * Oberklasse unter dem Lock der Unterklasse und zwei Threads könnten sich über zwei
+ * Streifen gegenseitig blockieren
+ *
+ * Ressourcen (getResource & Co.) kommen zuerst aus dem Benutzercode und nur wenn
+ * "resources" es erlaubt auch vom Host Sie werden als Stream direkt aus der Quelle
+ * geliefert (Dateien ab 64 KB gemappt JAR-Einträge beim Lesen entpackt) und nie komplett
+ * in den Heap kopiert Größe und Endung prüft die ResourcePolicy
  */
-public class BlockingClassLoader extends ClassLoader {
+public class BlockingClassLoader extends ClassLoader implements Closeable {
 
     private static final Logger logger = LogManager.getLogger(BlockingClassLoader.class);
+    private static final DenyLog denyLog = new DenyLog(logger, "class");
+    private static final DenyLog resourceDenyLog = new DenyLog(logger, "resource");
 
-    private final Set<String> blockedClasses = new HashSet<>();
-    private final Set<String> blockedPackages = new HashSet<>();
-    private final Map<String, byte[]> userClasses = new HashMap<>();
+    private static final AtomicLong ids = new AtomicLong();
 
-    public BlockingClassLoader(ClassLoader parent, String userCodePath, String configPath) {
-        super(parent);
-        loadConfig(configPath);
-
-        // Prüfen ob userCodePath ein Verzeichnis oder eine JAR ist
-        Path path = Paths.get(userCodePath);
-        if (Files.isDirectory(path)) {
-            logger.info("Loading from directory: " + userCodePath);
-            loadUserClassesFromDir(userCodePath);
-        } else if (userCodePath.endsWith(".jar") && Files.isRegularFile(path)) {
-            logger.info("Loading from JAR: " + userCodePath);
-            loadUserClassesFromJar(userCodePath);
-        } else {
-            logger.error("ERROR: userCodePath is not a valid directory or .jar file: " + userCodePath);
-        }
-    }
+    private static final String GUARD_CLASS = SandboxGuard.class.getName();
 
-    /**
-     * Lädt die Sicherheitsregeln aus der JSON-Konfigdatei
-     */
-    private void loadConfig(String configFilePath) {
-        try (InputStream is = Files.newInputStream(Paths.get(configFilePath))) {
-            JSONTokener tokener = new JSONTokener(is);
-            JSONObject config = new JSONObject(tokener);
+    static {
+        registerAsParallelCapable();
+    }
 
-            if (config.has("blockedClasses")) {
-                JSONArray blocked = config.getJSONArray("blockedClasses");
-                for (int i = 0; i < blocked.length(); i++) {
-                    blockedClasses.add(blocked.getString(i));
-                }
-            }
+    private final PolicyRegistry.Handle policy;
+    private final ClassSource userClasses;
+    private final DecisionCache decisions = new DecisionCache();
+    private final LoaderMetrics metrics = new LoaderMetrics();
+    private final AtomicBoolean closed = new AtomicBoolean();
 
-            if (config.has("blockedPackages")) {
-                JSONArray blocked = config.getJSONArray("blockedPackages");
-                for (int i = 0; i < blocked.length(); i++) {
-                    blockedPackages.add(blocked.getString(i));
-                }
-            }
+    public BlockingClassLoader(ClassLoader parent, String userCodePath, String configPath) {
+        super(nextName(), parent);
+        // Geparste Regeln werden prozessweit geteilt und bei Änderungen neu geladen
+        this.policy = PolicyRegistry.shared().acquire(configPath);
 
-            logger.info("Loaded " + blockedClasses.size() + " blocked classes and "
-                    + blockedPackages.size() + " blocked packages from " + configFilePath);
-        } catch (Exception e) {
-            logger.warn("WARNING: Could not load config file '" + configFilePath + "'. No classes will be blocked.", e);
-        }
+        this.userClasses = openUserClasses(userCodePath);
     }
 
     /**
-     * Scannt das Verzeichnis und lädt alle .class-Dateien in den Speicher
+     * Lädt Benutzerklassen aus einer bereits geöffneten Quelle (z.B. im Speicher kompiliert)
      */
-    private void loadUserClassesFromDir(String userCodePath) {
-        Path startPath = Paths.get(userCodePath);
-        try (Stream<Path> stream = Files.walk(startPath)) {
-            stream.filter(path -> path.toString().endsWith(".class"))
-                    .forEach(classFile -> {
-                        try {
-                            String className = startPath.relativize(classFile).toString()
-                                    .replace(".class", "")
-                                    .replace(java.io.File.separatorChar, '.');
-                            byte[] classBytes = Files.readAllBytes(classFile);
-                            userClasses.put(className, classBytes);
-                            logger.debug("Discovered user class: " + className);
-                        } catch (IOException e) {
-                            logger.warn("Failed to load class file: " + classFile, e);
-                        }
-                    });
-        } catch (IOException e) {
-            logger.error("ERROR: Could not read user code from directory: " + userCodePath, e);
-        }
+    BlockingClassLoader(ClassLoader parent, ClassSource userClasses, String configPath) {
+        super(nextName(), parent);
+        this.policy = PolicyRegistry.shared().acquire(configPath);
+        this.userClasses = userClasses;
     }
 
     /**
-     * Scannt eine JAR-Datei und lädt alle .class-Dateien in den Speicher
+     * Eindeutiger Name pro Loader Er steht in Stack-Traces (StackTraceElement.getClassLoaderName)
+     * und darüber erkennt LoaderLeakDetector Threads die noch Benutzercode ausführen
      */
-    private void loadUserClassesFromJar(String jarPath) {
-        try (JarFile jarFile = new JarFile(jarPath)) {
-            Enumeration<JarEntry> entries = jarFile.entries();
-            while (entries.hasMoreElements()) {
-                JarEntry entry = entries.nextElement();
-                if (entry.getName().endsWith(".class")) {
-                    String className = entry.getName()
-                            .replace(".class", "")
-                            .replace('/', '.');
+    private static String nextName() {
+        return "sandbox-" + ids.incrementAndGet();
+    }
 
-                    try (InputStream is = new BufferedInputStream(jarFile.getInputStream(entry));
-                         ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+    /**
+     * Baut nur den Index der Benutzerklassen auf die Bytes werden erst in findClass gelesen
+     */
+    private ClassSource openUserClasses(String userCodePath) {
+        // Mehrere Einträge (wie -cp) oder ein Verzeichnis bzw. eine JAR
+        boolean classPath = userCodePath.contains(File.pathSeparator);
+        Path path = classPath ? null : Paths.get(userCodePath);
+        if (classPath) {
+            logger.info("Loading from class path: {}", userCodePath);
+        } else if (Files.isDirectory(path)) {
+            logger.info("Loading from directory: {}", userCodePath);
+        } else if (userCodePath.endsWith(".jar") && Files.isRegularFile(path)) {
+            logger.info("Loading from JAR: {}", userCodePath);
+        } else {
+            logger.error("ERROR: userCodePath is not a valid directory or .jar file: {}", userCodePath);
+            return ClassSource.empty();
+        }
+        try {
+            long start = System.nanoTime();
+            // Auch eine einzelne Spring-Boot-JAR bzw. WAR braucht den Klassenpfad (Präfix und eingebettete JARs)
+            ClassSource source = classPath || (!Files.isDirectory(path) && CompositeClassSource.isNestedArchive(path))
+                    ? CompositeClassSource.open(userCodePath)
+                    : ClassSource.open(path);
+            long micros = Math.max(1, (System.nanoTime() - start) / 1_000);
+            int count = source.classNames().size();
+            logger.info("Indexed {} user classes in {} ms ({} classes/s)",
+                    count, micros / 1_000, count * 1_000_000L / micros);
+            return source;
+        } catch (IOException e) {
+            logger.error("ERROR: Could not read user code from: {}", userCodePath, e);
+            return ClassSource.empty();
+        }
+    }
 
-                        byte[] buffer = new byte[4096];
-                        int bytesRead;
-                        while ((bytesRead = is.read(buffer)) != -1) {
-                            baos.write(buffer, 0, bytesRead);
-                        }
 
-                        byte[] classBytes = baos.toByteArray();
-                        userClasses.put(className, classBytes);
-                        logger.debug("Discovered user class from JAR: " + className);
-                    }
-                }
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        if (closed.get()) {
+            throw new ClassNotFoundException("Sandbox loader " + getName() + " is closed: " + name);
+        }
+        if (userClasses.contains(name)) {
+            SandboxEvents.ClassDefine event = new SandboxEvents.ClassDefine();
+            event.begin();
+            long start = System.nanoTime();
+            ByteBuffer classBytes;
+            try {
+                classBytes = readUserClass(name);
+            } catch (IOException e) {
+                throw new ClassNotFoundException("Could not read user class: " + name, e);
             }
-        } catch (IOException e) {
-            logger.error("ERROR: Could not read user code from JAR: " + jarPath, e);
+            logger.debug("Defining sandboxed class: {}", name);
+            int size = classBytes.remaining();
+            // Der Buffer wird nach defineClass nicht mehr referenziert
+            Class<?> c = defineClass(name, classBytes, (ProtectionDomain) null);
+            metrics.classDefined(size, System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.className = name;
+                event.bytes = size;
+                event.commit();
+            }
+            return c;
         }
+        return super.findClass(name);
     }
 
     /**
-     * Prüft ob eine Klasse blockiert ist (direkt oder per Package)
+     * Bytes einer Benutzerklasse mit umgeschriebenen Aufrufen blockierter Methoden
+     *
+     * Ist der Klassen-Hash bekannt (gecachte JAR) wird das Ergebnis pro Klasse und
+     * Policy im BytecodeCache abgelegt: leer = nichts umzuschreiben, sonst Hash der neuen Bytes
      */
-    private boolean isBlocked(String name) {
-        if (blockedClasses.contains(name)) {
-            return true;
+    private ByteBuffer readUserClass(String name) throws IOException {
+        SecurityPolicy currentPolicy = policy.current();
+        MethodRules rules = currentPolicy.methodRules();
+        if (rules.isEmpty()) {
+            return userClasses.read(name);
         }
-        for (String pkg : blockedPackages) {
-            if (name.startsWith(pkg + ".")) {
-                return true;
+        BytecodeCache cache = BytecodeCache.shared();
+        String classHash = userClasses.classHash(name);
+        String key = "rewrite-v" + MethodRules.VERSION + "-" + currentPolicy.contentHash();
+        if (classHash != null) {
+            String verdict = cache.verdict(classHash, key);
+            if (verdict != null && verdict.isEmpty()) {
+                return userClasses.read(name);
             }
+            byte[] rewritten = verdict != null ? cache.get(verdict) : null;
+            if (rewritten != null) {
+                return ByteBuffer.wrap(rewritten).asReadOnlyBuffer();
+            }
+        }
+
+        ByteBuffer classBytes = userClasses.read(name);
+        // Hängt das Ergebnis von Oberklassen ab darf es nicht nur unter dem Hash dieser Klasse liegen
+        AtomicBoolean usedHierarchy = new AtomicBoolean();
+        byte[] rewritten = CallSiteRewriter.rewrite(classBytes, rules, owner -> {
+            usedHierarchy.set(true);
+            return superclassOf(owner);
+        });
+        if (rewritten != null) {
+            logger.info("Rewrote blocked method calls in {}", name);
         }
-        return false;
+        if (classHash != null && !usedHierarchy.get()) {
+            cache.putVerdict(classHash, key, rewritten == null ? "" : cache.put(rewritten));
+        }
+        return rewritten == null ? classBytes : ByteBuffer.wrap(rewritten);
     }
 
-    @Override
-    protected Class<?> findClass(String name) throws ClassNotFoundException {
-        byte[] classBytes = userClasses.get(name);
-        if (classBytes != null) {
-            logger.debug("Defining sandboxed class: " + name);
-            return defineClass(name, classBytes, 0, classBytes.length);
+    /**
+     * Interner Name der Oberklasse einer Benutzer- oder Host-Klasse oder null
+     *
+     * Benutzerklassen werden nur aus ihren Bytes gelesen nicht geladen Host-Klassen über den
+     * Parent ohne Initialisierung
+     */
+    private String superclassOf(String internalName) {
+        String name = internalName.replace('/', '.');
+        try {
+            if (userClasses.contains(name)) {
+                return ConstantPoolScanner.superclass(userClasses.read(name));
+            }
+            Class<?> superclass = Class.forName(name, false, getParent()).getSuperclass();
+            return superclass == null ? null : superclass.getName().replace('.', '/');
+        } catch (IOException | ClassNotFoundException | LinkageError e) {
+            return null;
         }
-        return super.findClass(name);
     }
 
     @Override
     public Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
-        // 1. Blocklist prüfen
-        if (isBlocked(name)) {
-            logger.warn("Access denied! The class '" + name + "' is blocked by security policy.");
-            throw new ClassNotFoundException("Access denied! The class '" + name + "' is blocked by security policy.");
+        // 0. Bereits getroffene Entscheidung nutzen ohne Regeln oder Lock
+        SecurityPolicy currentPolicy = policy.current();
+        DecisionCache.Decision cached = decisions.lookup(name, currentPolicy);
+        if (cached != null) {
+            if (cached.kind == DecisionCache.Kind.DENIED) {
+                throw denied(name);
+            }
+            if (resolve) {
+                resolveClass(cached.type);
+            }
+            return cached.type;
+        }
+
+        // 1. Blocklist prüfen (direkt, per Package oder per Muster)
+        long checkStart = System.nanoTime();
+        boolean blocked = currentPolicy.isBlocked(name);
+        metrics.policyCheck(System.nanoTime() - checkStart);
+        if (blocked) {
+            decisions.putDenied(name, currentPolicy);
+            throw denied(name);
         }
 
-        // 2. Prüfen ob es eine unserer User-Klassen ist
+        // 2. Prüfen ob es eine unserer User-Klassen ist (Lock nur für diesen Namen)
         synchronized (getClassLoadingLock(name)) {
             Class<?> c = findLoadedClass(name);
+            // Der Guard der umgeschriebenen Aufrufe darf nicht durch Benutzercode ersetzt werden
+            boolean userClass = userClasses.contains(name) && !name.equals(GUARD_CLASS);
             if (c == null) {
-                if (userClasses.containsKey(name)) {
+                if (userClass) {
                     // Ist eine User-Klasse also selbst laden via findClass
                     c = findClass(name);
                 } else {
                     // Keine User-Klasse an Parent delegieren
+                    metrics.parentDelegation();
                     c = super.loadClass(name, false); // 'false' für resolve um Zyklen zu vermeiden
                 }
             }
+            decisions.putResolved(name, c, userClass, currentPolicy);
 
             if (resolve) {
                 resolveClass(c);
@@ -187,5 +262,327 @@ public class BlockingClassLoader extends ClassLoader {
             return c;
         }
     }
-}
 
+    /**
+     * Prüft alle Benutzerklassen statisch gegen die aktuelle Policy ohne sie zu laden
+     */
+    public PreScan.Report preScan() {
+        return PreScan.scan(userClasses, policy.current());
+    }
+
+    /**
+     * Lädt und verifiziert im Hintergrund alle Benutzerklassen die von mainClass aus
+     * erreichbar sind (siehe ClassPrefetcher) Kehrt sofort zurück
+     */
+    void prefetch(String mainClass) {
+        if (!closed.get()) {
+            ClassPrefetcher.start(this, userClasses, mainClass);
+        }
+    }
+
+    /**
+     * Lädt die Klassen ohne sie zu initialisieren damit der eigentliche Lauf sie schon
+     * definiert bzw. vom Parent aufgelöst im Entscheidungs-Cache vorfindet Nicht auffindbare
+     * Namen werden übersprungen Danach beginnen die Metriken wieder bei null
+     * Liefert die Anzahl geladener Klassen
+     */
+    int prewarm(Collection<String> classNames) {
+        int loaded = 0;
+        for (String name : classNames) {
+            try {
+                loadClass(name, false);
+                loaded++;
+            } catch (ClassNotFoundException | LinkageError e) {
+                logger.debug("Prewarm skipped {}: {}", name, e.toString());
+            }
+        }
+        metrics.reset();
+        return loaded;
+    }
+
+    /**
+     * Namen aller Benutzerklassen leer wenn der Pfad beim Bau nicht lesbar war
+     */
+    Set<String> classNames() {
+        return userClasses.classNames();
+    }
+
+    /**
+     * Bis zu max Klassennamen die dieser Loader bisher erfolgreich aufgelöst hat
+     */
+    List<String> resolvedClassNames(int max) {
+        return decisions.resolvedNames(max);
+    }
+
+    // ---------------------------------------------------------------- Ressourcen
+
+    @Override
+    public URL getResource(String name) {
+        if (hasUserResource(name)) {
+            return findResource(name);
+        }
+        return hostResources() ? getParent().getResource(name) : null;
+    }
+
+    @Override
+    public Enumeration<URL> getResources(String name) throws IOException {
+        List<URL> urls = new ArrayList<>(Collections.list(findResources(name)));
+        if (hostResources() && (!urls.isEmpty() || !hasUserResource(name))) {
+            urls.addAll(Collections.list(getParent().getResources(name)));
+        }
+        return Collections.enumeration(urls);
+    }
+
+    @Override
+    public InputStream getResourceAsStream(String name) {
+        // Ohne Umweg über URL und URLConnection
+        if (hasUserResource(name)) {
+            if (!isUserResource(name)) {
+                return null;
+            }
+            try {
+                return openUserResource(name);
+            } catch (IOException e) {
+                logger.debug("Could not open resource {}: {}", name, e.toString());
+                return null;
+            }
+        }
+        return hostResources() ? getParent().getResourceAsStream(name) : null;
+    }
+
+    /**
+     * Nur Benutzer-Ressourcen Bei mehreren Einträgen mit demselben Namen (Klassenpfad)
+     * gilt wie beim Laden der Klassen nur der erste
+     */
+    @Override
+    protected URL findResource(String name) {
+        if (!isUserResource(name)) {
+            return null;
+        }
+        try {
+            URI uri = new URI("sandbox", getName(), "/" + name, null);
+            return URL.of(uri, new ResourceHandler(name));
+        } catch (URISyntaxException | IOException e) {
+            logger.debug("Could not build URL for resource {}: {}", name, e.toString());
+            return null;
+        }
+    }
+
+    @Override
+    protected Enumeration<URL> findResources(String name) {
+        URL url = findResource(name);
+        return url == null ? Collections.emptyEnumeration() : Collections.enumeration(List.of(url));
+    }
+
+    private boolean hostResources() {
+        return getParent() != null && policy.current().resources().allowHostResources();
+    }
+
+    /**
+     * true wenn der Benutzercode die Ressource enthält egal ob die Policy sie erlaubt
+     * Eine abgelehnte Benutzer-Ressource verdeckt damit auch eine gleichnamige des Hosts
+     */
+    private boolean hasUserResource(String name) {
+        return userClassFile(name) != null || userClasses.resourceNames().contains(name);
+    }
+
+    /**
+     * true wenn der Benutzercode die Ressource enthält und die Policy sie erlaubt
+     */
+    private boolean isUserResource(String name) {
+        if (userClassFile(name) != null) {
+            return true;
+        }
+        if (!userClasses.resourceNames().contains(name)) {
+            return false;
+        }
+        long size;
+        try {
+            size = userClasses.resourceSize(name);
+        } catch (IOException e) {
+            return false;
+        }
+        String reason = policy.current().resources().denies(name, size);
+        if (reason != null) {
+            deniedResource(name, reason);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Klassenname wenn name die .class-Datei einer Benutzerklasse ist sonst null
+     * Diese Bytes sind ohnehin ladbar und unterliegen nicht der ResourcePolicy
+     */
+    private String userClassFile(String name) {
+        if (!name.endsWith(".class")) {
+            return null;
+        }
+        String className = name.substring(0, name.length() - ".class".length()).replace('/', '.');
+        return userClasses.contains(className) ? className : null;
+    }
+
+    private InputStream openUserResource(String name) throws IOException {
+        String className = userClassFile(name);
+        if (className != null) {
+            return new ByteBufferInputStream(userClasses.read(className));
+        }
+        InputStream stream = userClasses.openResource(name);
+        long maxBytes = policy.current().resources().maxBytes();
+        // Immer beim Lesen zählen: die Größe im JAR-Verzeichnis legt der Einreichende fest und
+        // muss nicht zum entpackten Inhalt passen (isUserResource prüft nur die Angabe)
+        return maxBytes > 0 ? new LimitedInputStream(stream, name, maxBytes) : stream;
+    }
+
+    private void deniedResource(String name, String reason) {
+        metrics.denied(name);
+        SandboxEvents.denied(name, "resource", policy.current().source());
+        resourceDenyLog.denied(name);
+        logger.debug("Resource {} denied: {}", name, reason);
+    }
+
+    /**
+     * Liefert sandbox://sandbox-N/name-URLs aus diesem Loader
+     */
+    private final class ResourceHandler extends URLStreamHandler {
+
+        private final String name;
+
+        ResourceHandler(String name) {
+            this.name = name;
+        }
+
+        @Override
+        protected URLConnection openConnection(URL url) {
+            return new URLConnection(url) {
+                @Override
+                public void connect() {
+                    connected = true;
+                }
+
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    connect();
+                    return openUserResource(name);
+                }
+
+                @Override
+                public long getContentLengthLong() {
+                    try {
+                        String className = userClassFile(name);
+                        return className != null
+                                ? userClasses.read(className).remaining()
+                                : userClasses.resourceSize(name);
+                    } catch (IOException e) {
+                        return -1;
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * Bricht mit einer IOException ab sobald mehr als maxBytes gelesen wurden
+     */
+    private final class LimitedInputStream extends FilterInputStream {
+
+        private final String name;
+        private final long maxBytes;
+        private long read;
+
+        LimitedInputStream(InputStream in, String name, long maxBytes) {
+            super(in);
+            this.name = name;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(int n) throws IOException {
+            read += n;
+            if (read > maxBytes) {
+                String reason = "more than " + maxBytes + " bytes";
+                deniedResource(name, reason);
+                throw new IOException("Access denied! The resource '" + name + "' has " + reason + ".");
+            }
+        }
+    }
+
+    /**
+     * Inhalts-Hash der aktuell gültigen Policy
+     */
+    String policyHash() {
+        return policy.current().contentHash();
+    }
+
+    /**
+     * Budgets aus der aktuellen Policy
+     */
+    public RunLimits limits() {
+        return policy.current().limits();
+    }
+
+    /**
+     * Momentaufnahme der Metriken dieses Loaders
+     */
+    public LoaderMetrics.Snapshot metrics() {
+        return metrics.snapshot();
+    }
+
+    /**
+     * Trefferquote des Entscheidungs-Caches
+     */
+    public DecisionCache.Stats decisionCacheStats() {
+        return decisions.stats();
+    }
+
+    /**
+     * Gibt offene Quellen (z.B. die JAR-Datei) und die Policy frei Danach können keine
+     * weiteren Benutzerklassen mehr definiert werden Mehrfacher Aufruf ist harmlos
+     *
+     * Der Loader selbst und seine Klassen (Metaspace) werden erst vom GC freigegeben wenn
+     * nichts mehr auf sie zeigt Ob das passiert prüft LoaderLeakDetector
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            policy.close();
+        } finally {
+            userClasses.close();
+        }
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    private ClassNotFoundException denied(String name) {
+        if (ClassPrefetcher.active()) {
+            // Erst melden wenn der Lauf selbst die Klasse anfasst (dann aus dem DecisionCache)
+            return new ClassNotFoundException("Access denied! The class '" + name + "' is blocked by security policy.");
+        }
+        metrics.denied(name);
+        SandboxEvents.denied(name, "class", policy.current().source());
+        denyLog.denied(name);
+        return new ClassNotFoundException("Access denied! The class '" + name + "' is blocked by security policy.");
+    }
+}
@@ -0,0 +1,429 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Inhaltsadressierter Cache für Bytecode der zwischen Sandbox-Läufen geteilt wird
+ *
+ * Schlüssel ist immer ein SHA-256: für eine JAR über die ganze Datei, für eine Klasse
+ * über ihre Bytes Zwei Ebenen: ein LRU im Speicher (begrenzt in Bytes) und optional
+ * ein Verzeichnis auf der Platte
+ *
+ *   classes/ab/abcdef....class      entpackte Klasse
+ *   archives/1234....idx            Manifest einer JAR: Klassenname -> Klassen-Hash
+ *                                   und Ressourcenname -> Größe
+ *   verdicts/abcdef...-9876...      Prüfergebnis einer Klasse unter einer Policy
+ *
+ * Im Speicher sind neben den Klassen-Bytes (begrenzt in Bytes) auch Manifeste, Prüfergebnisse
+ * und Datei-Hashes als LRU begrenzt (nach Anzahl) damit ein Server mit vielen verschiedenen
+ * Uploads nicht unbegrenzt wächst
+ *
+ * Kennt der Cache eine JAR bereits muss sie weder geöffnet noch entpackt werden
+ * Prüfergebnisse (z.B. "keine blockierten Referenzen") liegen daneben damit
+ * wiederholt eingereichte Artefakte auch die Analyse überspringen
+ */
+final class BytecodeCache {
+
+    private static final Logger logger = LogManager.getLogger(BytecodeCache.class);
+
+    static final long DEFAULT_MEMORY_BYTES = 64L * 1024 * 1024;
+
+    // Erste Zeile jeder .idx-Datei Ältere Manifeste ohne Ressourcen werden neu angelegt
+    private static final String MANIFEST_HEADER = "# sandbox manifest 2";
+
+    private static final int MAX_MANIFESTS = 256;
+    private static final int MAX_VERDICTS = 64 * 1024;
+    private static final int MAX_ARCHIVE_HASHES = 1024;
+    private static final int MAX_QUEUED_INGESTS = 64;
+
+    // Wenige gemeinsame Threads fürs Übernehmen Kein Daemon damit ein Einzellauf mit
+    // Platten-Cache diesen noch fertig befüllt untätig beenden sie sich sofort wieder
+    private static final ThreadPoolExecutor ingestPool = newIngestPool();
+
+    private static volatile BytecodeCache shared = new BytecodeCache(null, DEFAULT_MEMORY_BYTES);
+    // Server, Batch und Worker reichen dieselben JARs wiederholt ein
+    private static volatile boolean longLived;
+
+    private final Path directory;
+    private final long maxMemoryBytes;
+
+    // Zugriff nur unter synchronized(memory)
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(256, 0.75f, true);
+    private long memoryBytes;
+
+    private final Map<String, Manifest> manifests = lru(MAX_MANIFESTS);
+    private final Map<String, String> verdicts = lru(MAX_VERDICTS);
+    private final Map<String, String> archiveHashes = lru(MAX_ARCHIVE_HASHES);
+    private final Set<String> ingesting = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    BytecodeCache(Path directory, long maxMemoryBytes) {
+        this.directory = directory;
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+    static BytecodeCache shared() {
+        return shared;
+    }
+
+    /**
+     * Aktiviert den Platten-Cache für alle folgenden Läufe
+     */
+    static void configure(Path directory, long maxMemoryBytes) throws IOException {
+        Files.createDirectories(directory);
+        shared = new BytecodeCache(directory, maxMemoryBytes);
+        logger.info("Bytecode cache: {}", directory.toAbsolutePath());
+    }
+
+    /**
+     * Meldet einen Modus mit vielen Läufen in derselben JVM Erst dann lohnt es unbekannte
+     * JARs auch ohne Platten-Cache in den Speicher zu übernehmen
+     */
+    static void longLived() {
+        longLived = true;
+    }
+
+    record Stats(long memoryHits, long diskHits, long misses, long memoryBytes, int archives) {
+    }
+
+    /**
+     * Inhalt einer JAR ohne sie öffnen zu müssen Größen sind die Angaben aus dem zentralen
+     * Verzeichnis (-1 = unbekannt)
+     */
+    record Manifest(Map<String, String> classes, Map<String, Long> resources) {
+    }
+
+    Stats stats() {
+        synchronized (memory) {
+            return new Stats(memoryHits.sum(), diskHits.sum(), misses.sum(), memoryBytes, manifests.size());
+        }
+    }
+
+    // ---------------------------------------------------------------- Archive
+
+    /**
+     * SHA-256 der JAR-Datei Pro Pfad/Datei-ID/Größe/mtime wird nur einmal gehasht
+     * Die Datei-ID (Inode) erkennt eine ersetzte Datei auch bei gleicher Größe und mtime
+     */
+    String archiveHash(Path jar) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+        String key = jar.toAbsolutePath().normalize() + "|" + attributes.fileKey() + "|" + attributes.size()
+                + "|" + attributes.lastModifiedTime();
+        String hash = archiveHashes.get(key);
+        if (hash == null) {
+            hash = hashFile(jar);
+            archiveHashes.put(key, hash);
+        }
+        return hash;
+    }
+
+    private static String hashFile(Path file) throws IOException {
+        try (InputStream is = Files.newInputStream(file)) {
+            MessageDigest digest = sha256();
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        }
+    }
+
+    /**
+     * Manifest einer bereits bekannten JAR oder null
+     *
+     * Format der Datei nach MANIFEST_HEADER: "c Klassenname Klassen-Hash" bzw.
+     * "r Größe Ressourcenname" (der Name darf Leerzeichen enthalten)
+     */
+    Manifest manifest(String archiveHash) {
+        Manifest manifest = manifests.get(archiveHash);
+        if (manifest != null || directory == null) {
+            return manifest;
+        }
+        Path file = directory.resolve("archives").resolve(archiveHash + ".idx");
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !lines.get(0).equals(MANIFEST_HEADER)) {
+                logger.debug("Ignoring outdated cache manifest {}", file);
+                return null;
+            }
+            Map<String, String> classes = new HashMap<>();
+            Map<String, Long> resources = new HashMap<>();
+            for (String line : lines.subList(1, lines.size())) {
+                int space = line.indexOf(' ', 2);
+                if (space < 0) {
+                    throw new IOException("Malformed line: " + line);
+                }
+                if (line.startsWith("c ")) {
+                    classes.put(line.substring(2, space), line.substring(space + 1));
+                } else if (line.startsWith("r ")) {
+                    resources.put(line.substring(space + 1), Long.parseLong(line.substring(2, space)));
+                } else {
+                    throw new IOException("Malformed line: " + line);
+                }
+            }
+            manifest = new Manifest(Map.copyOf(classes), Map.copyOf(resources));
+            manifests.put(archiveHash, manifest);
+            return manifest;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | NumberFormatException e) {
+            logger.warn("Could not read cache manifest {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Liest im Hintergrund alle Klassen der JAR in den Cache und legt danach das Manifest
+     * samt Ressourcennamen an
+     * Ein Archiv wird dabei nur einmal gleichzeitig verarbeitet Die JAR wird dafür eigens
+     * geöffnet damit der Aufrufer seine Quelle jederzeit schließen kann
+     *
+     * Weil die Datei erneut über ihren Pfad gelesen wird kann sie inzwischen eine andere
+     * sein Sie wird deshalb vor und nach dem Einlesen neu gehasht und das Manifest nur
+     * unter archiveHash abgelegt wenn beide Male genau dieses Archiv vorlag
+     *
+     * Ohne Platten-Cache und außerhalb langlebiger Modi (longLived) entfällt das Übernehmen
+     * ein Einzellauf würde den Speicher-Cache nur füllen um ihn beim Beenden zu verwerfen
+     * Ist die Warteschlange voll wird das Archiv erst beim nächsten Lauf übernommen
+     */
+    void ingestAsync(String archiveHash, Path jarPath) {
+        if (directory == null && !longLived) {
+            return;
+        }
+        if (!ingesting.add(archiveHash)) {
+            return;
+        }
+        try {
+            ingestPool.execute(() -> ingest(archiveHash, jarPath));
+        } catch (RejectedExecutionException e) {
+            ingesting.remove(archiveHash);
+            logger.debug("Ingest queue full, not caching {} now", jarPath);
+        }
+    }
+
+    private void ingest(String archiveHash, Path jarPath) {
+        try (ClassSource source = new JarClassSource(jarPath)) {
+            if (!hashFile(jarPath).equals(archiveHash)) {
+                logger.warn("Archive {} changed before it could be cached", jarPath);
+                return;
+            }
+            Map<String, String> classes = new ConcurrentHashMap<>();
+            ClassScanner.ScanStats stats = ClassScanner.scan(source, (className, classBytes) -> {
+                byte[] bytes = new byte[classBytes.remaining()];
+                classBytes.get(bytes);
+                classes.put(className, put(bytes));
+            });
+            Map<String, Long> resources = new HashMap<>();
+            for (String name : source.resourceNames()) {
+                if (name.indexOf('\n') >= 0 || name.indexOf('\r') >= 0) {
+                    // Passt nicht ins zeilenweise Manifest die JAR wird dann nie aus dem Cache bedient
+                    throw new IOException("Unsupported resource name: " + name.strip());
+                }
+                resources.put(name, source.resourceSize(name));
+            }
+            if (!hashFile(jarPath).equals(archiveHash)) {
+                logger.warn("Archive {} changed while it was being cached", jarPath);
+                return;
+            }
+            if (stats.failures() == 0) {
+                storeManifest(archiveHash, new Manifest(Map.copyOf(classes), Map.copyOf(resources)));
+                logger.info("Cached archive {}: {}", archiveHash.substring(0, 12), stats);
+            }
+        } catch (Exception e) {
+            logger.warn("Could not cache archive {}", archiveHash.substring(0, 12), e);
+        } finally {
+            ingesting.remove(archiveHash);
+        }
+    }
+
+    private void storeManifest(String archiveHash, Manifest manifest) throws IOException {
+        manifests.put(archiveHash, manifest);
+        if (directory != null) {
+            StringBuilder sb = new StringBuilder(MANIFEST_HEADER).append('\n');
+            manifest.classes().forEach((name, hash) -> sb.append("c ").append(name).append(' ').append(hash).append('\n'));
+            manifest.resources().forEach((name, size) -> sb.append("r ").append(size).append(' ').append(name).append('\n'));
+            writeAtomically(directory.resolve("archives").resolve(archiveHash + ".idx"),
+                    sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    // ---------------------------------------------------------------- Klassen
+
+    /**
+     * Bytes einer Klasse über ihren Hash oder null Der Aufrufer darf das Array nicht verändern
+     */
+    byte[] get(String classHash) {
+        synchronized (memory) {
+            byte[] bytes = memory.get(classHash);
+            if (bytes != null) {
+                memoryHits.increment();
+                return bytes;
+            }
+        }
+        if (directory != null) {
+            try {
+                byte[] bytes = Files.readAllBytes(classFile(classHash));
+                diskHits.increment();
+                remember(classHash, bytes);
+                return bytes;
+            } catch (NoSuchFileException e) {
+                // nicht auf der Platte
+            } catch (IOException e) {
+                logger.warn("Could not read cached class {}: {}", classHash, e.getMessage());
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Legt Klassen-Bytes ab und liefert ihren Hash
+     */
+    String put(byte[] bytes) throws IOException {
+        String hash = hash(bytes);
+        remember(hash, bytes);
+        if (directory != null) {
+            Path file = classFile(hash);
+            if (!Files.exists(file)) {
+                writeAtomically(file, bytes);
+            }
+        }
+        return hash;
+    }
+
+    static String hash(byte[] bytes) {
+        return HexFormat.of().formatHex(sha256().digest(bytes));
+    }
+
+    private void remember(String hash, byte[] bytes) {
+        if (bytes.length > maxMemoryBytes) {
+            return;
+        }
+        synchronized (memory) {
+            if (memory.put(hash, bytes) == null) {
+                memoryBytes += bytes.length;
+            }
+            var it = memory.entrySet().iterator();
+            while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+                memoryBytes -= it.next().getValue().length;
+                it.remove();
+            }
+        }
+    }
+
+    private Path classFile(String hash) {
+        return directory.resolve("classes").resolve(hash.substring(0, 2)).resolve(hash + ".class");
+    }
+
+    // ---------------------------------------------------------------- Prüfergebnisse
+
+    /**
+     * Gespeichertes Prüfergebnis einer Klasse unter einer Policy oder null
+     * Der Inhalt wird vom Aufrufer festgelegt (z.B. leer = keine Verstöße)
+     */
+    String verdict(String classHash, String policyHash) {
+        String key = classHash + "-" + policyHash;
+        String verdict = verdicts.get(key);
+        if (verdict != null || directory == null) {
+            return verdict;
+        }
+        try {
+            verdict = Files.readString(directory.resolve("verdicts").resolve(key), StandardCharsets.UTF_8);
+            verdicts.put(key, verdict);
+            return verdict;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    void putVerdict(String classHash, String policyHash, String verdict) {
+        String key = classHash + "-" + policyHash;
+        verdicts.put(key, verdict);
+        if (directory != null) {
+            try {
+                writeAtomically(directory.resolve("verdicts").resolve(key), verdict.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                logger.warn("Could not store verdict {}: {}", key, e.getMessage());
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- Hilfsmethoden
+
+    /**
+     * Schreibt erst in eine temporäre Datei damit parallele Läufe nie halbe Dateien sehen
+     */
+    private static void writeAtomically(Path target, byte[] bytes) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), ".tmp-", null);
+        try {
+            Files.write(tmp, bytes);
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (FileAlreadyExistsException e) {
+            // Inhalt ist über den Hash ohnehin identisch
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static ThreadPoolExecutor newIngestPool() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(2, 2, 200, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED_INGESTS),
+                Thread.ofPlatform().name("bytecode-cache-ingest-", 0).inheritInheritableThreadLocals(false).factory());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Map mit Zugriffsreihenfolge die über maxEntries den am längsten unbenutzten Eintrag verdrängt
+     */
+    private static <V> Map<String, V> lru(int maxEntries) {
+        return Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * JAR-Quelle die zuerst den BytecodeCache fragt
+ *
+ * Ist die JAR (per SHA-256) bekannt kommen Klassen- und Ressourcenindex aus dem Manifest
+ * und die Klassen aus dem Cache Die JAR wird nur geöffnet falls eine Klasse inzwischen
+ * verdrängt wurde oder eine Ressource gelesen wird
+ * Unbekannte JARs werden normal gelesen und im Hintergrund in den Cache übernommen
+ */
+final class CachedArchiveClassSource implements ClassSource {
+
+    private static final Logger logger = LogManager.getLogger(CachedArchiveClassSource.class);
+
+    private final Path jarPath;
+    private final BytecodeCache cache;
+    private final BytecodeCache.Manifest manifest;
+    private JarClassSource fallback;
+
+    private CachedArchiveClassSource(Path jarPath, BytecodeCache cache, BytecodeCache.Manifest manifest) {
+        this.jarPath = jarPath;
+        this.cache = cache;
+        this.manifest = manifest;
+    }
+
+    static ClassSource open(Path jarPath, BytecodeCache cache) throws IOException {
+        String archiveHash = cache.archiveHash(jarPath);
+        BytecodeCache.Manifest manifest = cache.manifest(archiveHash);
+        if (manifest != null) {
+            logger.info("Archive found in bytecode cache: {}", archiveHash.substring(0, 12));
+            return new CachedArchiveClassSource(jarPath, cache, manifest);
+        }
+        cache.ingestAsync(archiveHash, jarPath);
+        return new JarClassSource(jarPath);
+    }
+
+    @Override
+    public String classHash(String className) {
+        return manifest.classes().get(className);
+    }
+
+    @Override
+    public boolean contains(String className) {
+        return manifest.classes().containsKey(className);
+    }
+
+    @Override
+    public Set<String> classNames() {
+        return manifest.classes().keySet();
+    }
+
+    @Override
+    public ByteBuffer read(String className) throws IOException {
+        String hash = manifest.classes().get(className);
+        if (hash == null) {
+            throw new IOException("No such class: " + className);
+        }
+        byte[] bytes = cache.get(hash);
+        if (bytes != null) {
+            // Das Array ist geteilt also nur lesend herausgeben
+            return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+        return fallback().read(className);
+    }
+
+    @Override
+    public Set<String> resourceNames() {
+        return manifest.resources().keySet();
+    }
+
+    @Override
+    public long resourceSize(String name) throws IOException {
+        Long size = manifest.resources().get(name);
+        if (size == null) {
+            throw new IOException("No such resource: " + name);
+        }
+        return size;
+    }
+
+    /**
+     * Erst hier wird die JAR geöffnet Schlägt das fehl bekommt der Aufrufer die IOException
+     */
+    @Override
+    public InputStream openResource(String name) throws IOException {
+        resourceSize(name);
+        return fallback().openResource(name);
+    }
+
+    private synchronized JarClassSource fallback() throws IOException {
+        if (fallback == null) {
+            logger.debug("Opening {} for an evicted class or a resource", jarPath);
+            fallback = new JarClassSource(jarPath);
+        }
+        return fallback;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (fallback != null) {
+            fallback.close();
+        }
+    }
+}
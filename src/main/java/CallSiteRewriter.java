@@ -0,0 +1,502 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Schreibt Aufrufe blockierter Methoden (MethodRules) in Aufrufe eines Stubs um
+ * der über SandboxGuard eine SecurityException wirft
+ *
+ * Arbeitet direkt auf den Bytes ohne Bytecode-Bibliothek in einem Durchlauf:
+ * Konstantenpool lesen, Methodenrümpfe nach invoke* auf betroffene Methodref-Einträge
+ * absuchen, Befehle an Ort und Stelle ersetzen und pro Ziel eine private statische
+ * Stub-Methode anhängen Die Codelängen ändern sich nicht (invokeinterface wird zu
+ * invokestatic + 2x nop) deshalb bleiben Sprungziele und StackMapTable gültig
+ *
+ * Aus
+ *   invokestatic  java/lang/System.exit(I)V
+ * wird
+ *   invokestatic  ThisClass.$sandbox$denied$0(I)V
+ * mit dem Stub
+ *   ldc_w "java.lang.System.exit"; invokestatic SandboxGuard.denied; athrow
+ *
+ * Auch MethodHandle-Konstanten (z.B. System::exit als Lambda) werden auf den Stub umgebogen
+ * Handles über MethodHandles.Lookup (findStatic usw.) sind über MethodRules.LOOKUP_RULES
+ * gesperrt Aufrufe über eine Unterklasse als Besitzer der Referenz werden über die
+ * Oberklassenkette erkannt (siehe MethodRules.matchingOwner) Nicht erfasst werden Aufrufe
+ * über Reflection dafür bleiben die Klassenregeln zuständig
+ */
+final class CallSiteRewriter {
+
+    static final String STUB_PREFIX = "$sandbox$denied$";
+
+    private static final String GUARD_CLASS = "SandboxGuard";
+    private static final String GUARD_METHOD = "denied";
+    private static final String GUARD_DESCRIPTOR = "(Ljava/lang/String;)Ljava/lang/SecurityException;";
+
+    private static final int UTF8 = 1;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int METHODREF = 10;
+    private static final int INTERFACE_METHODREF = 11;
+    private static final int NAME_AND_TYPE = 12;
+    private static final int METHOD_HANDLE = 15;
+
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_INTERFACE = 0x0200;
+    private static final int ACC_SYNTHETIC = 0x1000;
+
+    private static final int INVOKEVIRTUAL = 0xB6;
+    private static final int INVOKESPECIAL = 0xB7;
+    private static final int INVOKESTATIC = 0xB8;
+    private static final int INVOKEINTERFACE = 0xB9;
+
+    private static final int REF_INVOKE_VIRTUAL = 5;
+    private static final int REF_INVOKE_STATIC = 6;
+    private static final int REF_INVOKE_SPECIAL = 7;
+    private static final int REF_INVOKE_INTERFACE = 9;
+
+    private CallSiteRewriter() {
+    }
+
+    /**
+     * Ein betroffener Methodref-Eintrag Pro Aufrufart (statisch oder mit Empfänger)
+     * wird höchstens ein Stub erzeugt
+     */
+    private static final class Target {
+
+        final String owner;
+        final String name;
+        final String descriptor;
+        int staticStub;
+        int instanceStub;
+
+        Target(String owner, String name, String descriptor) {
+            this.owner = owner;
+            this.name = name;
+            this.descriptor = descriptor;
+        }
+    }
+
+    /**
+     * Liefert die umgeschriebene Klasse oder null wenn sie keine blockierten Aufrufe enthält
+     * Der Buffer selbst wird nicht verändert
+     */
+    static byte[] rewrite(ByteBuffer classFile, MethodRules rules) throws IOException {
+        return rewrite(classFile, rules, owner -> null);
+    }
+
+    /**
+     * Wie rewrite(classFile, rules) erkennt aber auch Aufrufe über eine Unterklasse des
+     * gesperrten Besitzers superclassOf liefert den internen Namen der Oberklasse oder null
+     */
+    static byte[] rewrite(ByteBuffer classFile, MethodRules rules, UnaryOperator<String> superclassOf)
+            throws IOException {
+        if (rules.isEmpty()) {
+            return null;
+        }
+        ByteBuffer b = classFile.duplicate();
+        int base = b.position();
+        try {
+            if (b.getInt(base) != 0xCAFEBABE) {
+                throw new IOException("Not a class file");
+            }
+            int count = b.getShort(base + 8) & 0xFFFF;
+            int[] offsets = new int[count];
+            int pos = base + 10;
+            for (int i = 1; i < count; i++) {
+                offsets[i] = pos;
+                int tag = b.get(pos) & 0xFF;
+                pos += switch (tag) {
+                    case UTF8 -> 3 + (b.getShort(pos + 1) & 0xFFFF);
+                    case CLASS, STRING, 16, 19, 20 -> 3;
+                    case METHOD_HANDLE -> 4;
+                    case 3, 4, 9, METHODREF, INTERFACE_METHODREF, NAME_AND_TYPE, 17, 18 -> 5;
+                    case 5, 6 -> {
+                        i++; // belegen zwei Einträge
+                        yield 9;
+                    }
+                    default -> throw new IOException("Unknown constant pool tag " + tag + " at index " + i);
+                };
+            }
+            int cpEnd = pos;
+
+            // Betroffene Methodref-Einträge Besitzernamen werden nur einmal pro Class-Eintrag dekodiert
+            Target[] targets = null;
+            String[] owners = new String[count];
+            for (int i = 1; i < count; i++) {
+                int tag = b.get(offsets[i]) & 0xFF;
+                if (tag != METHODREF && tag != INTERFACE_METHODREF) {
+                    continue;
+                }
+                int classIndex = b.getShort(offsets[i] + 1) & 0xFFFF;
+                String owner = owners[classIndex];
+                if (owner == null) {
+                    owner = ConstantPoolScanner.utf8(b, offsets[b.getShort(offsets[classIndex] + 1) & 0xFFFF] + 1);
+                    owners[classIndex] = owner;
+                }
+                int nat = offsets[b.getShort(offsets[i] + 3) & 0xFFFF];
+                String name = ConstantPoolScanner.utf8(b, offsets[b.getShort(nat + 1) & 0xFFFF] + 1);
+                String ruleOwner = rules.matchingOwner(owner, name, superclassOf);
+                if (ruleOwner != null) {
+                    if (targets == null) {
+                        targets = new Target[count];
+                    }
+                    // Stub und Meldung nennen den gesperrten Besitzer nicht die Unterklasse
+                    targets[i] = new Target(ruleOwner, name,
+                            ConstantPoolScanner.utf8(b, offsets[b.getShort(nat + 3) & 0xFFFF] + 1));
+                }
+            }
+            if (targets == null) {
+                return null;
+            }
+
+            // Ab hier wird umgeschrieben: Kopie mit Basis 0
+            byte[] data = new byte[b.limit() - base];
+            b.get(base, data);
+            for (int i = 1; i < count; i++) {
+                offsets[i] -= base;
+            }
+            return new Rewrite(data, count, offsets, cpEnd - base, targets).apply();
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated or malformed class file", e);
+        }
+    }
+
+    /**
+     * Zustand eines Umschreibvorgangs für genau eine Klasse
+     */
+    private static final class Rewrite {
+
+        private final byte[] data;
+        private final ByteBuffer b;
+        private final int count;
+        private final int[] offsets;
+        private final int cpEnd;
+        private final Target[] targets;
+
+        private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+        private final DataOutputStream pool = new DataOutputStream(poolBytes);
+        private int nextIndex;
+
+        private final ByteArrayOutputStream stubBytes = new ByteArrayOutputStream();
+        private final DataOutputStream stubs = new DataOutputStream(stubBytes);
+        private int stubCount;
+
+        private int thisClass;
+        private boolean isInterface;
+        private int stubAccess;
+        private int codeName;
+        private int guardRef;
+
+        Rewrite(byte[] data, int count, int[] offsets, int cpEnd, Target[] targets) {
+            this.data = data;
+            this.b = ByteBuffer.wrap(data);
+            this.count = count;
+            this.offsets = offsets;
+            this.cpEnd = cpEnd;
+            this.targets = targets;
+            this.nextIndex = count;
+        }
+
+        byte[] apply() throws IOException {
+            int major = u2(6);
+            int accessFlags = u2(cpEnd);
+            thisClass = u2(cpEnd + 2);
+            isInterface = (accessFlags & ACC_INTERFACE) != 0;
+            if (isInterface && major < 52) {
+                // Statische Interface-Methoden gibt es erst ab Java 8 lieber gar nicht definieren
+                throw new IOException("Cannot rewrite blocked calls in a pre-Java-8 interface");
+            }
+            // Private Interface-Methoden erst ab Java 9
+            stubAccess = ACC_STATIC | ACC_SYNTHETIC | (isInterface && major < 53 ? ACC_PUBLIC : ACC_PRIVATE);
+            codeName = findUtf8("Code");
+
+            // Felder überspringen Methoden durchgehen
+            int pos = cpEnd + 6;
+            pos += 2 + u2(pos) * 2;
+            int fields = u2(pos);
+            pos += 2;
+            for (int f = 0; f < fields; f++) {
+                pos = skipAttributes(pos + 6);
+            }
+            int methodsCount = pos;
+            int methods = u2(pos);
+            pos += 2;
+            boolean changed = false;
+            for (int m = 0; m < methods; m++) {
+                int attributes = u2(pos + 6);
+                pos += 8;
+                for (int a = 0; a < attributes; a++) {
+                    int length = b.getInt(pos + 2);
+                    if (u2(pos) == codeName) {
+                        changed |= rewriteCode(pos + 14, b.getInt(pos + 10));
+                    }
+                    pos += 6 + length;
+                }
+            }
+            int methodsEnd = pos;
+
+            for (int i = 1; i < count; i++) {
+                if ((data[offsets[i]] & 0xFF) == METHOD_HANDLE) {
+                    changed |= rewriteMethodHandle(offsets[i]);
+                }
+            }
+            if (!changed) {
+                // Nur referenziert aber nie aufgerufen z.B. in einer Annotation
+                return null;
+            }
+            if (nextIndex > 0xFFFF) {
+                throw new IOException("Constant pool overflow while rewriting blocked calls");
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length + poolBytes.size() + stubBytes.size());
+            out.write(data, 0, 8);
+            out.write(nextIndex >>> 8);
+            out.write(nextIndex);
+            out.write(data, 10, cpEnd - 10);
+            poolBytes.writeTo(out);
+            out.write(data, cpEnd, methodsCount - cpEnd);
+            int newMethods = methods + stubCount;
+            out.write(newMethods >>> 8);
+            out.write(newMethods);
+            out.write(data, methodsCount + 2, methodsEnd - methodsCount - 2);
+            stubBytes.writeTo(out);
+            out.write(data, methodsEnd, data.length - methodsEnd);
+            return out.toByteArray();
+        }
+
+        /**
+         * Ersetzt im Bytecode alle invoke* auf betroffene Einträge Die Länge bleibt gleich
+         */
+        private boolean rewriteCode(int start, int length) throws IOException {
+            boolean changed = false;
+            int end = start + length;
+            int pc = start;
+            while (pc < end) {
+                int opcode = data[pc] & 0xFF;
+                if (opcode >= INVOKEVIRTUAL && opcode <= INVOKEINTERFACE) {
+                    Target target = targets[u2(pc + 1)];
+                    if (target != null) {
+                        int stub = stub(target, opcode == INVOKESTATIC);
+                        data[pc] = (byte) INVOKESTATIC;
+                        data[pc + 1] = (byte) (stub >>> 8);
+                        data[pc + 2] = (byte) stub;
+                        if (opcode == INVOKEINTERFACE) {
+                            data[pc + 3] = 0; // nop
+                            data[pc + 4] = 0; // nop
+                        }
+                        changed = true;
+                    }
+                }
+                pc += instructionLength(pc, start);
+            }
+            return changed;
+        }
+
+        private boolean rewriteMethodHandle(int offset) throws IOException {
+            int kind = data[offset + 1] & 0xFF;
+            Target target = targets[u2(offset + 2)];
+            if (target == null || (kind != REF_INVOKE_VIRTUAL && kind != REF_INVOKE_STATIC
+                    && kind != REF_INVOKE_SPECIAL && kind != REF_INVOKE_INTERFACE)) {
+                return false;
+            }
+            int stub = stub(target, kind == REF_INVOKE_STATIC);
+            data[offset + 1] = REF_INVOKE_STATIC;
+            data[offset + 2] = (byte) (stub >>> 8);
+            data[offset + 3] = (byte) stub;
+            return true;
+        }
+
+        /**
+         * Index des Methodref auf den Stub für dieses Ziel Der Stub wird beim ersten Bedarf angelegt
+         * Bei Instanzmethoden bekommt er den Empfänger als ersten Parameter
+         */
+        private int stub(Target target, boolean isStatic) throws IOException {
+            int existing = isStatic ? target.staticStub : target.instanceStub;
+            if (existing != 0) {
+                return existing;
+            }
+            if (guardRef == 0) {
+                int guardClass = addEntry(CLASS, addUtf8(GUARD_CLASS));
+                int guardNat = addEntry(NAME_AND_TYPE, addUtf8(GUARD_METHOD), addUtf8(GUARD_DESCRIPTOR));
+                guardRef = addEntry(METHODREF, guardClass, guardNat);
+                if (codeName == 0) {
+                    codeName = addUtf8("Code");
+                }
+            }
+            String descriptor = isStatic
+                    ? target.descriptor
+                    : "(L" + target.owner + ";" + target.descriptor.substring(1);
+            int message = addEntry(STRING, addUtf8(target.owner.replace('/', '.') + "." + target.name));
+            int name = addUtf8(STUB_PREFIX + stubCount++);
+            int type = addUtf8(descriptor);
+            int ref = addEntry(isInterface ? INTERFACE_METHODREF : METHODREF, thisClass,
+                    addEntry(NAME_AND_TYPE, name, type));
+
+            // method_info mit genau einem Code-Attribut: ldc_w, invokestatic, athrow
+            stubs.writeShort(stubAccess);
+            stubs.writeShort(name);
+            stubs.writeShort(type);
+            stubs.writeShort(1);
+            stubs.writeShort(codeName);
+            stubs.writeInt(19);
+            stubs.writeShort(1); // max_stack
+            stubs.writeShort(argumentSlots(descriptor));
+            stubs.writeInt(7);
+            stubs.writeByte(0x13); // ldc_w
+            stubs.writeShort(message);
+            stubs.writeByte(INVOKESTATIC);
+            stubs.writeShort(guardRef);
+            stubs.writeByte(0xBF); // athrow
+            stubs.writeShort(0); // exception_table_length
+            stubs.writeShort(0); // attributes_count
+
+            if (isStatic) {
+                target.staticStub = ref;
+            } else {
+                target.instanceStub = ref;
+            }
+            return ref;
+        }
+
+        private int findUtf8(String value) throws IOException {
+            for (int i = 1; i < count; i++) {
+                int offset = offsets[i];
+                if (data[offset] == UTF8 && u2(offset + 1) == value.length()
+                        && ConstantPoolScanner.utf8(b, offset + 1).equals(value)) {
+                    return i;
+                }
+            }
+            return 0;
+        }
+
+        private int addUtf8(String value) throws IOException {
+            pool.writeByte(UTF8);
+            pool.writeUTF(value);
+            return nextIndex++;
+        }
+
+        private int addEntry(int tag, int... indices) throws IOException {
+            pool.writeByte(tag);
+            for (int index : indices) {
+                pool.writeShort(index);
+            }
+            return nextIndex++;
+        }
+
+        private int skipAttributes(int pos) {
+            int attributes = u2(pos);
+            pos += 2;
+            for (int a = 0; a < attributes; a++) {
+                pos += 6 + b.getInt(pos + 2);
+            }
+            return pos;
+        }
+
+        /**
+         * Länge des Befehls an pc tableswitch/lookupswitch werden relativ zum Code-Anfang ausgerichtet
+         */
+        private int instructionLength(int pc, int codeStart) throws IOException {
+            int opcode = data[pc] & 0xFF;
+            switch (opcode) {
+                case 0xAA -> { // tableswitch
+                    int p = pc + 1 + ((4 - ((pc + 1 - codeStart) & 3)) & 3);
+                    int low = b.getInt(p + 4);
+                    int high = b.getInt(p + 8);
+                    return p - pc + 12 + (high - low + 1) * 4;
+                }
+                case 0xAB -> { // lookupswitch
+                    int p = pc + 1 + ((4 - ((pc + 1 - codeStart) & 3)) & 3);
+                    return p - pc + 8 + b.getInt(p + 4) * 8;
+                }
+                case 0xC4 -> { // wide
+                    return (data[pc + 1] & 0xFF) == 0x84 ? 6 : 4;
+                }
+                default -> {
+                    int length = LENGTHS[opcode];
+                    if (length == 0) {
+                        throw new IOException("Unknown opcode " + opcode);
+                    }
+                    return length;
+                }
+            }
+        }
+
+        private int u2(int offset) {
+            return b.getShort(offset) & 0xFFFF;
+        }
+    }
+
+    /**
+     * Anzahl lokaler Variablen-Slots der Parameter long und double belegen zwei
+     */
+    static int argumentSlots(String descriptor) {
+        int slots = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            if (c == 'J' || c == 'D') {
+                slots += 2;
+                i++;
+                continue;
+            }
+            while (c == '[') {
+                c = descriptor.charAt(++i);
+            }
+            i = c == 'L' ? descriptor.indexOf(';', i) + 1 : i + 1;
+            slots++;
+        }
+        return slots;
+    }
+
+    // Befehlslängen in Bytes 0 = unbekannt bzw. variabel (Sonderfälle oben)
+    private static final int[] LENGTHS = new int[256];
+
+    static {
+        for (int op = 0x00; op <= 0xC9; op++) {
+            LENGTHS[op] = 1;
+        }
+        LENGTHS[0x10] = 2; // bipush
+        LENGTHS[0x11] = 3; // sipush
+        LENGTHS[0x12] = 2; // ldc
+        LENGTHS[0x13] = 3; // ldc_w
+        LENGTHS[0x14] = 3; // ldc2_w
+        for (int op = 0x15; op <= 0x19; op++) {
+            LENGTHS[op] = 2; // iload..aload
+        }
+        for (int op = 0x36; op <= 0x3A; op++) {
+            LENGTHS[op] = 2; // istore..astore
+        }
+        LENGTHS[0x84] = 3; // iinc
+        for (int op = 0x99; op <= 0xA8; op++) {
+            LENGTHS[op] = 3; // if*, goto, jsr
+        }
+        LENGTHS[0xA9] = 2; // ret
+        LENGTHS[0xAA] = 0;
+        LENGTHS[0xAB] = 0;
+        for (int op = 0xB2; op <= 0xB8; op++) {
+            LENGTHS[op] = 3; // get/put field/static, invokevirtual/special/static
+        }
+        LENGTHS[0xB9] = 5; // invokeinterface
+        LENGTHS[0xBA] = 5; // invokedynamic
+        LENGTHS[0xBB] = 3; // new
+        LENGTHS[0xBC] = 2; // newarray
+        LENGTHS[0xBD] = 3; // anewarray
+        LENGTHS[0xC0] = 3; // checkcast
+        LENGTHS[0xC1] = 3; // instanceof
+        LENGTHS[0xC4] = 0;
+        LENGTHS[0xC5] = 4; // multianewarray
+        LENGTHS[0xC6] = 3; // ifnull
+        LENGTHS[0xC7] = 3; // ifnonnull
+        LENGTHS[0xC8] = 5; // goto_w
+        LENGTHS[0xC9] = 5; // jsr_w
+    }
+}
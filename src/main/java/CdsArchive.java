@@ -0,0 +1,126 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class-Data-Sharing-Archiv für den Start weiterer Sandbox-JVMs (mode=cds)
+ *
+ * Startet einen normalen Sandbox-Lauf als eigene JVM und lässt sie beim Beenden alle
+ * geladenen Klassen des Hosts (JDK, org.json, log4j, Sandbox) und die vom Benutzercode
+ * benutzten Parent-Klassen in ein Archiv schreiben Folgende JVMs mappen diese Klassen
+ * dann fertig geparst statt sie neu zu laden
+ *
+ *   JDK 25+   -XX:AOTCacheOutput (AOT-Cache in einem Schritt)
+ *   JDK 24    -XX:AOTMode=record und danach -XX:AOTMode=create
+ *   sonst     -XX:ArchiveClassesAtExit (dynamisches AppCDS-Archiv)
+ *
+ * Benutzerklassen selbst landen nicht im Archiv sie kommen aus dem BlockingClassLoader
+ * und werden bei jedem Lauf neu definiert und geprüft
+ *
+ * Das Archiv gilt nur für genau diese JVM und diesen Klassenpfad Nach einem neuen Build
+ * von cclsandbox.jar verwirft die JVM es mit einer Warnung und startet ohne
+ */
+final class CdsArchive {
+
+    private static final Logger logger = LogManager.getLogger(CdsArchive.class);
+
+    static final String DEFAULT_ARCHIVE = "cclsandbox.jsa";
+
+    // Nur für den Aufnahme-Lauf selbst nicht an die Kind-JVM weiterreichen
+    private static final Set<String> OWN_PARAMS = Set.of("mode", "cds-archive");
+
+    private CdsArchive() {
+    }
+
+    /**
+     * JVM-Optionen mit denen eine neue Sandbox-JVM das Archiv benutzt
+     */
+    static List<String> launchOptions(Path archive) {
+        String path = archive.toAbsolutePath().toString();
+        return aotCache() ? List.of("-XX:AOTCache=" + path) : List.of("-XX:SharedArchiveFile=" + path);
+    }
+
+    /**
+     * Nimmt einen Lauf mit den übrigen Parametern auf und schreibt das Archiv
+     * Liefert den Exit-Code für Main (0 = Archiv geschrieben)
+     */
+    static int record(Map<String, String> params) {
+        Path archive = Paths.get(params.getOrDefault("cds-archive", DEFAULT_ARCHIVE)).toAbsolutePath();
+        List<String> runArgs = new ArrayList<>();
+        params.forEach((key, value) -> {
+            if (!OWN_PARAMS.contains(key)) {
+                runArgs.add(key + "=" + value);
+            }
+        });
+
+        int feature = Runtime.version().feature();
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(archive.getParent());
+            Files.deleteIfExists(archive);
+            int exitCode;
+            if (feature >= 25) {
+                exitCode = launch(List.of("-XX:AOTCacheOutput=" + archive), runArgs);
+            } else if (feature == 24) {
+                Path configuration = archive.resolveSibling(archive.getFileName() + "conf");
+                exitCode = launch(List.of("-XX:AOTMode=record", "-XX:AOTConfiguration=" + configuration), runArgs);
+                // Der zweite Schritt startet keine Anwendung er baut nur den Cache
+                launch(List.of("-XX:AOTMode=create", "-XX:AOTConfiguration=" + configuration,
+                        "-XX:AOTCache=" + archive), null);
+                Files.deleteIfExists(configuration);
+            } else {
+                exitCode = launch(List.of("-XX:ArchiveClassesAtExit=" + archive), runArgs);
+            }
+
+            if (!Files.isRegularFile(archive)) {
+                logger.error("ERROR: Kein CDS-Archiv erzeugt (Exit-Code des Laufs: {})", exitCode);
+                return 1;
+            }
+            logger.info("CDS-Archiv {} geschrieben ({} KB, {} ms, Exit-Code des Laufs: {})", archive,
+                    Files.size(archive) / 1024, (System.nanoTime() - start) / 1_000_000, exitCode);
+            logger.info("Start mit Archiv: java {} -jar cclsandbox.jar ...", String.join(" ", launchOptions(archive)));
+            return 0;
+        } catch (IOException e) {
+            logger.error("ERROR: CDS-Aufnahme fehlgeschlagen", e);
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    /**
+     * Startet Main mit demselben Klassenpfad in einer neuen JVM runArgs null = ohne Main
+     */
+    private static int launch(List<String> jvmOptions, List<String> runArgs) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(javaExecutable());
+        command.addAll(jvmOptions);
+        // Sonst eine Warnung pro nicht archivierbarer Klasse (Proxies, JFR-Events)
+        command.add("-Xlog:cds=error");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        if (runArgs != null) {
+            command.add(Main.class.getName());
+            command.addAll(runArgs);
+        }
+        logger.info("CDS: {}", String.join(" ", command));
+        return new ProcessBuilder(command).inheritIO().start().waitFor();
+    }
+
+    static String javaExecutable() {
+        return Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    }
+
+    private static boolean aotCache() {
+        return Runtime.version().feature() >= 24;
+    }
+}
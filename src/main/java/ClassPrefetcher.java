@@ -0,0 +1,140 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Definiert die Benutzerklassen die von der Main-Klasse aus erreichbar sind im Hintergrund
+ * vor (prefetch=true)
+ *
+ * Ein Koordinator baut den Abhängigkeitsgraphen aus den Konstantenpools (ConstantPoolScanner)
+ * in Breitensuche ab der Main-Klasse auf nur Kanten zu Benutzerklassen zählen Jede neu
+ * entdeckte Klasse geht sofort an den Pool der sie lädt (ohne Initialisierung) und linkt
+ * also verifiziert Lädt der Lauf die Klasse dann selbst findet er sie fertig im Loader bzw.
+ * im Entscheidungs-Cache statt sie erst dann zu lesen zu definieren und zu prüfen
+ *
+ * Statische Initialisierer laufen weiter erst im Lauf selbst und in der gewohnten Reihenfolge
+ * Ablehnungen beim Vorladen werden nicht gemeldet (DecisionCache merkt sie sich) erst wenn
+ * der Lauf die Klasse wirklich anfasst erscheinen sie in Log und Metriken
+ *
+ * Die CPU-Zeit der Vorlade-Threads zählt nicht zum Budget des Laufs Sie ist durch die
+ * Anzahl erreichbarer Klassen begrenzt Mit nur einem Kern würde das Vorladen dem Lauf
+ * bloß Rechenzeit wegnehmen dort bleibt prefetch wirkungslos
+ */
+final class ClassPrefetcher {
+
+    private static final Logger logger = LogManager.getLogger(ClassPrefetcher.class);
+
+    // Eigene Threads damit Vorladen nie Threads der Läufe oder des Servers belegt
+    private static final ExecutorService pool = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            Thread.ofPlatform().name("class-prefetch-", 0).daemon().inheritInheritableThreadLocals(false).factory());
+
+    private static final ThreadLocal<Boolean> prefetching = new ThreadLocal<>();
+
+    private final BlockingClassLoader loader;
+    private final ClassSource classes;
+    private final String root;
+    private final long start = System.nanoTime();
+    // Kanten zu anderen Benutzerklassen nur der Koordinator schreibt
+    private final Map<String, Set<String>> graph = new HashMap<>();
+    private final AtomicInteger pending = new AtomicInteger(1);
+    private final AtomicInteger defined = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    private ClassPrefetcher(BlockingClassLoader loader, ClassSource classes, String root) {
+        this.loader = loader;
+        this.classes = classes;
+        this.root = root;
+    }
+
+    /**
+     * Startet das Vorladen und kehrt sofort zurück Die Main-Klasse selbst lädt der Lauf
+     */
+    static void start(BlockingClassLoader loader, ClassSource classes, String root) {
+        if (Runtime.getRuntime().availableProcessors() < 2) {
+            logger.debug("Prefetch skipped: only one CPU");
+            return;
+        }
+        if (!classes.contains(root)) {
+            return;
+        }
+        ClassPrefetcher prefetcher = new ClassPrefetcher(loader, classes, root);
+        pool.execute(prefetcher::walk);
+    }
+
+    /**
+     * true solange der aktuelle Thread eine Klasse vorlädt (Ablehnungen dann nicht melden)
+     */
+    static boolean active() {
+        return prefetching.get() != null;
+    }
+
+    private void walk() {
+        try {
+            Queue<String> queue = new ArrayDeque<>();
+            queue.add(root);
+            graph.put(root, Set.of());
+            String name;
+            while ((name = queue.poll()) != null && !loader.isClosed()) {
+                Set<String> edges = new LinkedHashSet<>();
+                try {
+                    for (String ref : ConstantPoolScanner.referencedClasses(classes.read(name))) {
+                        if (!ref.equals(name) && classes.contains(ref)) {
+                            edges.add(ref);
+                        }
+                    }
+                } catch (IOException e) {
+                    logger.debug("Prefetch could not scan {}: {}", name, e.toString());
+                }
+                graph.put(name, edges);
+                for (String ref : edges) {
+                    if (graph.putIfAbsent(ref, Set.of()) == null) {
+                        queue.add(ref);
+                        pending.incrementAndGet();
+                        pool.execute(() -> define(ref));
+                    }
+                }
+            }
+        } finally {
+            done();
+        }
+    }
+
+    private void define(String name) {
+        prefetching.set(Boolean.TRUE);
+        try {
+            if (loader.isClosed()) {
+                return;
+            }
+            Class<?> c = loader.loadClass(name, false);
+            // Liefert die Konstruktoren erst nach dem Linken der Klasse also nach der
+            // Verifikation ohne sie zu initialisieren
+            c.getDeclaredConstructors();
+            defined.incrementAndGet();
+        } catch (ClassNotFoundException | LinkageError | RuntimeException e) {
+            // Der Lauf bekommt denselben Fehler erst wenn er die Klasse wirklich braucht
+            failed.incrementAndGet();
+            logger.debug("Prefetch skipped {}: {}", name, e.toString());
+        } finally {
+            prefetching.remove();
+            done();
+        }
+    }
+
+    private void done() {
+        if (pending.decrementAndGet() == 0) {
+            logger.info("Prefetched {} classes reachable from {} in {} ms ({} failed)",
+                    defined.get(), root, (System.nanoTime() - start) / 1_000_000, failed.get());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Liest alle Klassen einer ClassSource parallel und reicht die Bytes an einen Visitor weiter
+ *
+ * Jede Klasse wird auf einem eigenen virtuellen Thread gelesen bzw. entpackt
+ * Ein Semaphore begrenzt wie viele Buffer gleichzeitig im Speicher sind
+ * Gedacht für alles was wirklich jede Klasse braucht (Prüfen, Cachen, Vorladen)
+ * der normale ClassLoader-Pfad liest weiterhin nur bei Bedarf
+ */
+final class ClassScanner {
+
+    private static final Logger logger = LogManager.getLogger(ClassScanner.class);
+
+    @FunctionalInterface
+    interface Visitor {
+        void visit(String className, ByteBuffer classBytes) throws Exception;
+    }
+
+    /**
+     * Ergebnis eines Durchlaufs inklusive Durchsatz
+     */
+    record ScanStats(int classes, long bytes, long nanos, int failures) {
+
+        double classesPerSecond() {
+            return nanos == 0 ? 0.0 : classes * 1_000_000_000.0 / nanos;
+        }
+
+        double megabytesPerSecond() {
+            return nanos == 0 ? 0.0 : (bytes / (1024.0 * 1024.0)) * 1_000_000_000.0 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d classes, %.1f MB in %d ms (%.0f classes/s, %.1f MB/s, %d failures)",
+                    classes, bytes / (1024.0 * 1024.0), nanos / 1_000_000, classesPerSecond(),
+                    megabytesPerSecond(), failures);
+        }
+    }
+
+    private ClassScanner() {
+    }
+
+    static ScanStats scan(ClassSource source, Visitor visitor) {
+        return scan(source, Runtime.getRuntime().availableProcessors(), visitor);
+    }
+
+    /**
+     * Liest alle Klassen mit höchstens 'parallelism' gleichzeitigen Lesevorgängen
+     * Fehler einzelner Klassen werden geloggt und gezählt aber brechen den Scan nicht ab
+     */
+    static ScanStats scan(ClassSource source, int parallelism, Visitor visitor) {
+        Semaphore permits = new Semaphore(Math.max(1, parallelism));
+        LongAdder classes = new LongAdder();
+        LongAdder bytes = new LongAdder();
+        LongAdder failures = new LongAdder();
+
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String className : source.classNames()) {
+                permits.acquireUninterruptibly();
+                executor.execute(() -> {
+                    try {
+                        ByteBuffer classBytes = source.read(className);
+                        bytes.add(classBytes.remaining());
+                        visitor.visit(className, classBytes);
+                        classes.increment();
+                    } catch (Exception e) {
+                        failures.increment();
+                        logger.warn("Failed to scan class: {}", className, e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+        ScanStats stats = new ScanStats(classes.intValue(), bytes.sum(), System.nanoTime() - start,
+                failures.intValue());
+        logger.debug("Scanned {}", stats);
+        return stats;
+    }
+}
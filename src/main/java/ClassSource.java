@@ -0,0 +1,101 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * Quelle für Benutzerklassen
+ *
+ * Beim Öffnen wird nur ein Index (Klassenname -> Ort) aufgebaut
+ * Die Bytes werden erst in read() gelesen wenn der ClassLoader die Klasse
+ * wirklich definiert und danach nicht weiter festgehalten Ressourcen (alle übrigen
+ * Dateien) werden im selben Durchgang indiziert
+ *
+ * contains, classNames und read werden von mehreren Threads gleichzeitig aufgerufen
+ * (der ClassLoader ist parallel-fähig) Der Index wird deshalb im Konstruktor fertig
+ * gebaut und danach nur noch gelesen
+ */
+interface ClassSource extends Closeable {
+
+    boolean contains(String className);
+
+    Set<String> classNames();
+
+    /**
+     * Liest die Bytes einer Klasse Der Buffer gehört dem Aufrufer und wird nach
+     * defineClass nicht mehr gebraucht
+     */
+    ByteBuffer read(String className) throws IOException;
+
+    /**
+     * Namen aller Ressourcen (Dateien außer .class und .java) mit '/' wie bei getResource
+     */
+    default Set<String> resourceNames() {
+        return Set.of();
+    }
+
+    /**
+     * Größe einer Ressource in Bytes oder -1 wenn sie vorab nicht bekannt ist
+     */
+    default long resourceSize(String name) throws IOException {
+        throw new IOException("No such resource: " + name);
+    }
+
+    /**
+     * Öffnet eine Ressource ohne sie vorher ganz in den Heap zu lesen: Dateien werden
+     * gemappt, JAR-Einträge beim Lesen entpackt
+     */
+    default InputStream openResource(String name) throws IOException {
+        throw new IOException("No such resource: " + name);
+    }
+
+    /**
+     * SHA-256 der Klasse im BytecodeCache damit Prüfergebnisse ohne erneutes Hashen
+     * gefunden werden oder null wenn die Quelle nicht aus dem Cache kommt
+     */
+    default String classHash(String className) {
+        return null;
+    }
+
+    /**
+     * Öffnet je nach Pfad eine Verzeichnis- oder JAR-Quelle JARs gehen über den BytecodeCache
+     */
+    static ClassSource open(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            return new DirectoryClassSource(path);
+        }
+        if (path.toString().endsWith(".jar") && Files.isRegularFile(path)) {
+            return CachedArchiveClassSource.open(path, BytecodeCache.shared());
+        }
+        throw new IOException("Not a directory or .jar file: " + path);
+    }
+
+    /**
+     * Leere Quelle wenn der Benutzerpfad ungültig ist
+     */
+    static ClassSource empty() {
+        return new ClassSource() {
+            @Override
+            public boolean contains(String className) {
+                return false;
+            }
+
+            @Override
+            public Set<String> classNames() {
+                return Set.of();
+            }
+
+            @Override
+            public ByteBuffer read(String className) throws IOException {
+                throw new IOException("No such class: " + className);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,460 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Mehrere Verzeichnisse und JARs als eine Quelle (pathfrom mit File.pathSeparator getrennt)
+ *
+ * Beim Öffnen entsteht ein gemeinsamer Index Klassenname -> Eintrag Wie beim
+ * Java-Klassenpfad gewinnt der erste Eintrag Namen die weiter hinten noch einmal vorkommen
+ * werden als Duplikate gezählt und geloggt Ressourcen bekommen einen eigenen Index nach
+ * derselben Regel (ohne Warnung, META-INF/MANIFEST.MF steckt z.B. in jeder JAR)
+ *
+ * Für den Index werden von JARs nur die zentralen Verzeichnisse gelesen Geöffnet (mit
+ * BytecodeCache) wird eine JAR erst beim ersten read() einer ihrer Klassen
+ *
+ * JARs in einer JAR (z.B. Spring Boot: BOOT-INF/classes/ und BOOT-INF/lib/*.jar) werden
+ * ebenfalls aufgenommen: erst die Klassen unter BOOT-INF/classes/ bzw. WEB-INF/classes/
+ * dann jede eingebettete *.jar Für den Index wird nur das zentrale Verzeichnis der
+ * eingebetteten JAR gelesen (siehe nestedNames) Eine eingebettete JAR wird beim ersten
+ * Zugriff in eine temporäre Datei entpackt die close() wieder löscht
+ */
+final class CompositeClassSource implements ClassSource {
+
+    private static final Logger logger = LogManager.getLogger(CompositeClassSource.class);
+
+    private static final List<String> NESTED_CLASS_DIRS = List.of("BOOT-INF/classes/", "WEB-INF/classes/");
+    private static final int MAX_LOGGED_DUPLICATES = 10;
+
+    // Signaturen und feste Längen aus der ZIP-Spezifikation
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_HEADER = 0x06054b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_HEADER_SIZE = 22;
+
+    /**
+     * Eintrag im Klassenpfad dessen Quelle erst bei Bedarf geöffnet wird
+     */
+    private static final class Member {
+
+        interface Opener {
+            ClassSource open(Member member) throws IOException;
+        }
+
+        final String label;
+        private final Opener opener;
+        private ClassSource source;
+        private Path extracted;
+
+        Member(String label, Opener opener) {
+            this.label = label;
+            this.opener = opener;
+        }
+
+        synchronized ClassSource source() throws IOException {
+            if (source == null) {
+                logger.debug("Opening class path entry {}", label);
+                source = opener.open(this);
+            }
+            return source;
+        }
+
+        synchronized boolean isOpen() {
+            return source != null;
+        }
+
+        synchronized void close() throws IOException {
+            try {
+                if (source != null) {
+                    source.close();
+                }
+            } finally {
+                if (extracted != null) {
+                    Files.deleteIfExists(extracted);
+                }
+            }
+        }
+    }
+
+    /**
+     * Klassen und Ressourcen eines Eintrags in Reihenfolge
+     */
+    private record Names(List<String> classes, List<String> resources) {
+    }
+
+    /**
+     * Eintrag im zentralen Verzeichnis Der Offset ist relativ zum Anfang des Archivs
+     */
+    private record CentralEntry(String name, long localHeaderOffset) {
+    }
+
+    private final List<Member> members;
+    private final Map<String, Member> index;
+    private final Map<String, Member> resources;
+    private final int duplicates;
+
+    private CompositeClassSource(List<Member> members, Map<String, Member> index, Map<String, Member> resources,
+                                 int duplicates) {
+        this.members = members;
+        this.index = index;
+        this.resources = resources;
+        this.duplicates = duplicates;
+    }
+
+    /**
+     * Öffnet alle Einträge eines Klassenpfads Ungültige Einträge werden geloggt und übersprungen
+     */
+    static CompositeClassSource open(String classPath) throws IOException {
+        List<Member> members = new ArrayList<>();
+        Map<String, Member> index = new HashMap<>();
+        Map<String, Member> resources = new HashMap<>();
+        List<String> shadowed = new ArrayList<>();
+        int duplicates = 0;
+
+        for (String element : classPath.split(File.pathSeparator)) {
+            if (element.isBlank()) {
+                continue;
+            }
+            Path path = Paths.get(element);
+            Map<Member, Names> entries;
+            if (Files.isDirectory(path)) {
+                DirectoryClassSource directory = new DirectoryClassSource(path);
+                entries = Map.of(new Member(element, member -> directory),
+                        new Names(List.copyOf(directory.classNames()), List.copyOf(directory.resourceNames())));
+            } else if (element.endsWith(".jar") && Files.isRegularFile(path)) {
+                entries = jarMembers(path);
+            } else {
+                logger.error("ERROR: Class path entry is not a valid directory or .jar file: {}", element);
+                continue;
+            }
+            for (Map.Entry<Member, Names> entry : entries.entrySet()) {
+                Member member = entry.getKey();
+                members.add(member);
+                for (String resource : entry.getValue().resources()) {
+                    resources.putIfAbsent(resource, member);
+                }
+                for (String className : entry.getValue().classes()) {
+                    Member first = index.putIfAbsent(className, member);
+                    if (first != null) {
+                        duplicates++;
+                        if (shadowed.size() < MAX_LOGGED_DUPLICATES) {
+                            shadowed.add(className + " (" + member.label + " shadowed by " + first.label + ")");
+                        }
+                    }
+                }
+            }
+        }
+        if (duplicates > 0) {
+            logger.warn("WARNING: {} classes appear more than once on the class path, the first entry wins: {}{}",
+                    duplicates, String.join(", ", shadowed), duplicates > shadowed.size() ? ", ..." : "");
+        }
+        return new CompositeClassSource(List.copyOf(members), Collections.unmodifiableMap(index),
+                Collections.unmodifiableMap(resources), duplicates);
+    }
+
+    /**
+     * true wenn die JAR das Layout von Spring Boot bzw. einer WAR hat (BOOT-INF/ oder WEB-INF/)
+     * Ihre Klassen liegen dann unter einem Präfix und in eingebetteten JARs
+     */
+    static boolean isNestedArchive(Path jar) throws IOException {
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            return zip.stream().anyMatch(e -> e.getName().startsWith("BOOT-INF/") || e.getName().startsWith("WEB-INF/"));
+        }
+    }
+
+    /**
+     * Einträge einer JAR in Reihenfolge: eigene Klassen, dann eingebettete JARs nach Namen
+     */
+    private static Map<Member, Names> jarMembers(Path jar) throws IOException {
+        Map<Member, Names> members = new LinkedHashMap<>();
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            List<? extends ZipEntry> entries = zip.stream().toList();
+            String prefix = "";
+            for (String candidate : NESTED_CLASS_DIRS) {
+                if (entries.stream().anyMatch(e -> e.getName().startsWith(candidate))) {
+                    prefix = candidate;
+                    break;
+                }
+            }
+            Names names = new Names(new ArrayList<>(), new ArrayList<>());
+            List<ZipEntry> nested = new ArrayList<>();
+            for (ZipEntry entry : entries) {
+                if (entry.getName().endsWith(".jar") && !entry.isDirectory()) {
+                    nested.add(entry);
+                } else {
+                    addName(names, entry.getName(), prefix);
+                }
+            }
+            String classesPrefix = prefix;
+            members.put(new Member(jar.toString(), classesPrefix.isEmpty()
+                    ? member -> ClassSource.open(jar)
+                    : member -> new JarClassSource(jar, classesPrefix)), names);
+
+            nested.sort(Comparator.comparing(ZipEntry::getName));
+            try (FileChannel channel = FileChannel.open(jar)) {
+                Map<String, Long> stored = storedDataOffsets(channel, nested);
+                for (ZipEntry entry : nested) {
+                    members.put(nestedMember(jar, entry.getName()), nestedNames(zip, channel, stored, entry));
+                }
+            }
+        }
+        return members;
+    }
+
+    private static Member nestedMember(Path jar, String entryName) {
+        return new Member(jar + "!/" + entryName, member -> {
+            Path extracted = Files.createTempFile("sandbox-nested-", ".jar");
+            try (ZipFile zip = new ZipFile(jar.toFile());
+                 InputStream is = zip.getInputStream(zip.getEntry(entryName))) {
+                Files.copy(is, extracted, StandardCopyOption.REPLACE_EXISTING);
+                member.extracted = extracted;
+                return new JarClassSource(extracted);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(extracted);
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Klassen und Ressourcen einer eingebetteten JAR
+     *
+     * Ungepackt abgelegte JARs (STORED wie bei Spring Boot) liegen unverändert in der äußeren
+     * Datei dort wird nur ihr zentrales Verzeichnis an Ort und Stelle gelesen Komprimierte
+     * eingebettete JARs (oder solche die sich so nicht lesen lassen) werden einmal durchgelesen
+     */
+    private static Names nestedNames(ZipFile outer, FileChannel channel, Map<String, Long> stored, ZipEntry entry)
+            throws IOException {
+        Names names = new Names(new ArrayList<>(), new ArrayList<>());
+        Long start = stored.get(entry.getName());
+        List<CentralEntry> directory = start != null
+                ? centralDirectory(channel, start, entry.getCompressedSize())
+                : null;
+        if (directory != null) {
+            for (CentralEntry inner : directory) {
+                addName(names, inner.name(), "");
+            }
+            return names;
+        }
+        logger.debug("Reading nested archive {} to index it", entry.getName());
+        try (ZipInputStream zis = new ZipInputStream(outer.getInputStream(entry))) {
+            ZipEntry inner;
+            while ((inner = zis.getNextEntry()) != null) {
+                addName(names, inner.getName(), "");
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Position der Daten jeder ungepackten eingebetteten JAR in der äußeren Datei
+     */
+    private static Map<String, Long> storedDataOffsets(FileChannel channel, List<ZipEntry> nested) throws IOException {
+        Set<String> wanted = new HashSet<>();
+        for (ZipEntry entry : nested) {
+            if (entry.getMethod() == ZipEntry.STORED) {
+                wanted.add(entry.getName());
+            }
+        }
+        List<CentralEntry> directory = wanted.isEmpty() ? null : centralDirectory(channel, 0, channel.size());
+        if (directory == null) {
+            return Map.of();
+        }
+        Map<String, Long> offsets = new HashMap<>();
+        for (CentralEntry entry : directory) {
+            if (!wanted.contains(entry.name())) {
+                continue;
+            }
+            ByteBuffer local = read(channel, entry.localHeaderOffset(), LOCAL_HEADER_SIZE);
+            if (local != null && local.getInt(0) == LOCAL_HEADER) {
+                offsets.put(entry.name(), entry.localHeaderOffset() + LOCAL_HEADER_SIZE
+                        + Short.toUnsignedInt(local.getShort(26)) + Short.toUnsignedInt(local.getShort(28)));
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Zentrales Verzeichnis des Archivs im Bereich [start, start + length) der Datei oder null
+     * wenn es sich so nicht lesen lässt (z.B. ZIP64 oder Daten vor dem Archiv)
+     */
+    private static List<CentralEntry> centralDirectory(FileChannel channel, long start, long length) throws IOException {
+        if (length < END_HEADER_SIZE) {
+            return null;
+        }
+        // Der Kommentar am Ende ist höchstens 64 KB lang
+        int tail = (int) Math.min(length, END_HEADER_SIZE + 0xFFFF);
+        ByteBuffer end = read(channel, start + length - tail, tail);
+        if (end == null) {
+            return null;
+        }
+        int eocd = tail - END_HEADER_SIZE;
+        while (eocd >= 0 && end.getInt(eocd) != END_HEADER) {
+            eocd--;
+        }
+        if (eocd < 0) {
+            return null;
+        }
+        int count = Short.toUnsignedInt(end.getShort(eocd + 10));
+        long size = Integer.toUnsignedLong(end.getInt(eocd + 12));
+        long offset = Integer.toUnsignedLong(end.getInt(eocd + 16));
+        if (count == 0xFFFF || offset == 0xFFFFFFFFL || offset + size != length - tail + eocd) {
+            return null;
+        }
+        ByteBuffer directory = read(channel, start + offset, (int) size);
+        if (directory == null) {
+            return null;
+        }
+        List<CentralEntry> entries = new ArrayList<>(count);
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            if (pos + CENTRAL_HEADER_SIZE > size || directory.getInt(pos) != CENTRAL_HEADER) {
+                return null;
+            }
+            int nameLength = Short.toUnsignedInt(directory.getShort(pos + 28));
+            int skip = Short.toUnsignedInt(directory.getShort(pos + 30)) + Short.toUnsignedInt(directory.getShort(pos + 32));
+            if (pos + CENTRAL_HEADER_SIZE + nameLength > size) {
+                return null;
+            }
+            byte[] name = new byte[nameLength];
+            directory.get(pos + CENTRAL_HEADER_SIZE, name);
+            entries.add(new CentralEntry(new String(name, StandardCharsets.UTF_8),
+                    Integer.toUnsignedLong(directory.getInt(pos + 42))));
+            pos += CENTRAL_HEADER_SIZE + nameLength + skip;
+        }
+        return entries;
+    }
+
+    /**
+     * Liest length Bytes ab position (Little Endian wie im ZIP-Format) oder null am Dateiende
+     */
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return null;
+            }
+        }
+        return buffer;
+    }
+
+    private static void addName(Names names, String name, String prefix) {
+        if (!name.startsWith(prefix) || name.endsWith("/")) {
+            return;
+        }
+        if (name.endsWith(".class")) {
+            if (!name.startsWith("META-INF/")) {
+                names.classes().add(name.substring(prefix.length(), name.length() - ".class".length()).replace('/', '.'));
+            }
+        } else if (!name.endsWith(".java")) {
+            names.resources().add(name.substring(prefix.length()));
+        }
+    }
+
+    /**
+     * Anzahl Klassennamen die von einem früheren Eintrag verdeckt werden
+     */
+    int duplicates() {
+        return duplicates;
+    }
+
+    @Override
+    public boolean contains(String className) {
+        return index.containsKey(className);
+    }
+
+    @Override
+    public Set<String> classNames() {
+        return index.keySet();
+    }
+
+    @Override
+    public ByteBuffer read(String className) throws IOException {
+        Member member = index.get(className);
+        if (member == null) {
+            throw new IOException("No such class: " + className);
+        }
+        return member.source().read(className);
+    }
+
+    @Override
+    public Set<String> resourceNames() {
+        return resources.keySet();
+    }
+
+    @Override
+    public long resourceSize(String name) throws IOException {
+        return resourceMember(name).source().resourceSize(name);
+    }
+
+    @Override
+    public InputStream openResource(String name) throws IOException {
+        return resourceMember(name).source().openResource(name);
+    }
+
+    private Member resourceMember(String name) throws IOException {
+        Member member = resources.get(name);
+        if (member == null) {
+            throw new IOException("No such resource: " + name);
+        }
+        return member;
+    }
+
+    @Override
+    public String classHash(String className) {
+        Member member = index.get(className);
+        if (member == null) {
+            return null;
+        }
+        try {
+            return member.source().classHash(className);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        int opened = 0;
+        for (Member member : members) {
+            if (member.isOpen()) {
+                opened++;
+            }
+            try {
+                member.close();
+            } catch (IOException e) {
+                failure = failure == null ? e : failure;
+            }
+        }
+        logger.debug("Class path: {} of {} entries were opened", opened, members.size());
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
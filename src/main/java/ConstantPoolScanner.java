@@ -0,0 +1,203 @@
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Liest aus einer .class-Datei alle referenzierten Klassennamen ohne die ganze
+ * Klasse zu parsen
+ *
+ * Ausgewertet werden der Konstantenpool (Class, NameAndType- und MethodType-Deskriptoren,
+ * damit auch Methoden-/Feldreferenzen und invokedynamic-Bootstrap-Argumente) sowie
+ * die Deskriptoren der eigenen Felder und Methoden Methodenrümpfe werden übersprungen
+ * Utf8-Einträge werden nur für tatsächlich referenzierte Indizes zu Strings dekodiert
+ */
+final class ConstantPoolScanner {
+
+    private static final int CLASS = 7;
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int FLOAT = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int STRING = 8;
+    private static final int FIELDREF = 9;
+    private static final int METHODREF = 10;
+    private static final int INTERFACE_METHODREF = 11;
+    private static final int NAME_AND_TYPE = 12;
+    private static final int METHOD_HANDLE = 15;
+    private static final int METHOD_TYPE = 16;
+    private static final int DYNAMIC = 17;
+    private static final int INVOKE_DYNAMIC = 18;
+    private static final int MODULE = 19;
+    private static final int PACKAGE = 20;
+
+    private ConstantPoolScanner() {
+    }
+
+    /**
+     * Liefert alle referenzierten Klassen als Binärnamen (java.io.File)
+     * Die eigene Klasse ist ebenfalls enthalten
+     */
+    static Set<String> referencedClasses(ByteBuffer classFile) throws IOException {
+        ByteBuffer b = classFile.duplicate();
+        int base = b.position();
+        try {
+            if (b.getInt(base) != 0xCAFEBABE) {
+                throw new IOException("Not a class file");
+            }
+            int count = b.getShort(base + 8) & 0xFFFF;
+            int[] utf8Offsets = new int[count];
+            // Indizes deren Utf8 ein interner Klassenname (1) oder ein Deskriptor (2) ist
+            byte[] usage = new byte[count];
+            int[] classIndex = new int[count];
+            int classCount = 0;
+
+            int pos = base + 10;
+            for (int i = 1; i < count; i++) {
+                int tag = b.get(pos) & 0xFF;
+                switch (tag) {
+                    case UTF8 -> {
+                        utf8Offsets[i] = pos + 1;
+                        pos += 3 + (b.getShort(pos + 1) & 0xFFFF);
+                    }
+                    case CLASS -> {
+                        classIndex[classCount++] = b.getShort(pos + 1) & 0xFFFF;
+                        pos += 3;
+                    }
+                    case NAME_AND_TYPE -> {
+                        usage[b.getShort(pos + 3) & 0xFFFF] = 2;
+                        pos += 5;
+                    }
+                    case METHOD_TYPE -> {
+                        usage[b.getShort(pos + 1) & 0xFFFF] = 2;
+                        pos += 3;
+                    }
+                    case STRING, MODULE, PACKAGE -> pos += 3;
+                    case METHOD_HANDLE -> pos += 4;
+                    case INTEGER, FLOAT, FIELDREF, METHODREF, INTERFACE_METHODREF, DYNAMIC, INVOKE_DYNAMIC -> pos += 5;
+                    case LONG, DOUBLE -> {
+                        pos += 9;
+                        i++; // belegen zwei Einträge
+                    }
+                    default -> throw new IOException("Unknown constant pool tag " + tag + " at index " + i);
+                }
+            }
+            for (int i = 0; i < classCount; i++) {
+                usage[classIndex[i]] |= 1;
+            }
+
+            // Eigene Felder und Methoden: nur die Deskriptoren, Attribute werden übersprungen
+            pos += 6; // access_flags, this_class, super_class
+            int interfaces = b.getShort(pos) & 0xFFFF;
+            pos += 2 + interfaces * 2;
+            for (int member = 0; member < 2; member++) {
+                int members = b.getShort(pos) & 0xFFFF;
+                pos += 2;
+                for (int m = 0; m < members; m++) {
+                    usage[b.getShort(pos + 4) & 0xFFFF] |= 2;
+                    int attributes = b.getShort(pos + 6) & 0xFFFF;
+                    pos += 8;
+                    for (int a = 0; a < attributes; a++) {
+                        pos += 6 + b.getInt(pos + 2);
+                    }
+                }
+            }
+
+            Set<String> result = new HashSet<>();
+            for (int i = 1; i < count; i++) {
+                if (usage[i] == 0 || utf8Offsets[i] == 0) {
+                    continue;
+                }
+                String value = utf8(b, utf8Offsets[i]);
+                if (value.isEmpty()) {
+                    continue;
+                }
+                if ((usage[i] & 1) != 0 && value.charAt(0) != '[') {
+                    result.add(value.replace('/', '.'));
+                } else {
+                    addDescriptorClasses(value, result);
+                }
+            }
+            return result;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated or malformed class file", e);
+        }
+    }
+
+    /**
+     * Interner Name der Oberklasse (java/lang/Thread) oder null wenn es keine gibt
+     */
+    static String superclass(ByteBuffer classFile) throws IOException {
+        ByteBuffer b = classFile.duplicate();
+        int base = b.position();
+        try {
+            if (b.getInt(base) != 0xCAFEBABE) {
+                throw new IOException("Not a class file");
+            }
+            int count = b.getShort(base + 8) & 0xFFFF;
+            int[] offsets = new int[count];
+            int pos = base + 10;
+            for (int i = 1; i < count; i++) {
+                offsets[i] = pos;
+                int tag = b.get(pos) & 0xFF;
+                pos += switch (tag) {
+                    case UTF8 -> 3 + (b.getShort(pos + 1) & 0xFFFF);
+                    case CLASS, STRING, METHOD_TYPE, MODULE, PACKAGE -> 3;
+                    case METHOD_HANDLE -> 4;
+                    case INTEGER, FLOAT, FIELDREF, METHODREF, INTERFACE_METHODREF, NAME_AND_TYPE, DYNAMIC,
+                         INVOKE_DYNAMIC -> 5;
+                    case LONG, DOUBLE -> {
+                        i++; // belegen zwei Einträge
+                        yield 9;
+                    }
+                    default -> throw new IOException("Unknown constant pool tag " + tag + " at index " + i);
+                };
+            }
+            int superIndex = b.getShort(pos + 4) & 0xFFFF;
+            if (superIndex == 0) {
+                return null;
+            }
+            return utf8(b, offsets[b.getShort(offsets[superIndex] + 1) & 0xFFFF] + 1);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated or malformed class file", e);
+        }
+    }
+
+    /**
+     * Sammelt alle 'Lpkg/Name;' aus einem Feld- oder Methodendeskriptor
+     */
+    private static void addDescriptorClasses(String descriptor, Set<String> result) {
+        int i = descriptor.indexOf('L');
+        while (i >= 0) {
+            int end = descriptor.indexOf(';', i);
+            if (end < 0) {
+                return;
+            }
+            result.add(descriptor.substring(i + 1, end).replace('/', '.'));
+            i = descriptor.indexOf('L', end);
+        }
+    }
+
+    /**
+     * Dekodiert einen Utf8-Eintrag (modified UTF-8) Reines ASCII geht ohne Umweg
+     */
+    static String utf8(ByteBuffer b, int offset) throws IOException {
+        int length = b.getShort(offset) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        b.get(offset + 2, bytes);
+        for (byte value : bytes) {
+            if (value < 0 || value == 0) {
+                byte[] withLength = new byte[length + 2];
+                withLength[0] = (byte) (length >>> 8);
+                withLength[1] = (byte) length;
+                System.arraycopy(bytes, 0, withLength, 2, length);
+                return new DataInputStream(new ByteArrayInputStream(withLength)).readUTF();
+            }
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,157 @@
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache für die Entscheidungen von BlockingClassLoader.loadClass
+ *
+ * Aufgelöste Klassen (eigene oder vom Parent) und abgelehnte Namen werden hier
+ * gemerkt damit wiederholte Anfragen weder die Regeln prüfen noch einen Lock nehmen
+ * Abgelehnte Namen werden begrenzt und bei Bedarf verdrängt damit Code der
+ * Class.forName mit zufälligen Namen aufruft den Cache nicht beliebig wachsen lässt
+ */
+final class DecisionCache {
+
+    enum Kind {
+        USER,
+        ALLOWED_PARENT,
+        DENIED
+    }
+
+    /**
+     * Eine gecachte Entscheidung bei DENIED ist type immer null
+     */
+    static final class Decision {
+
+        static final Decision DENIED = new Decision(Kind.DENIED, null);
+
+        final Kind kind;
+        final Class<?> type;
+
+        private Decision(Kind kind, Class<?> type) {
+            this.kind = kind;
+            this.type = type;
+        }
+    }
+
+    /**
+     * Momentaufnahme der Zähler
+     */
+    record Stats(long hits, long misses, int resolved, int denied, long evictions) {
+
+        double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d misses=%d hitRate=%.1f%% resolved=%d denied=%d evictions=%d",
+                    hits, misses, hitRate() * 100, resolved, denied, evictions);
+        }
+    }
+
+    static final int DEFAULT_MAX_RESOLVED = 16_384;
+    static final int DEFAULT_MAX_DENIED = 1_024;
+
+    /**
+     * Alle Einträge gelten nur für die Policy-Version mit der sie entschieden wurden
+     * Ändert sich die Policy wird die ganze Generation ausgetauscht
+     */
+    private static final class Generation {
+
+        private final SecurityPolicy policy;
+        private final ConcurrentHashMap<String, Decision> resolved = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, Decision> denied = new ConcurrentHashMap<>();
+
+        private Generation(SecurityPolicy policy) {
+            this.policy = policy;
+        }
+    }
+
+    private volatile Generation generation = new Generation(SecurityPolicy.EMPTY);
+    private final int maxResolved;
+    private final int maxDenied;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    DecisionCache() {
+        this(DEFAULT_MAX_RESOLVED, DEFAULT_MAX_DENIED);
+    }
+
+    DecisionCache(int maxResolved, int maxDenied) {
+        this.maxResolved = maxResolved;
+        this.maxDenied = maxDenied;
+    }
+
+    /**
+     * Liefert die gecachte Entscheidung für diese Policy-Version oder null
+     */
+    Decision lookup(String name, SecurityPolicy policy) {
+        Generation g = generation(policy);
+        Decision decision = g.resolved.get(name);
+        if (decision == null) {
+            decision = g.denied.get(name);
+        }
+        if (decision != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return decision;
+    }
+
+    void putResolved(String name, Class<?> type, boolean userClass, SecurityPolicy policy) {
+        Generation g = generation;
+        // Ist der Cache voll wird einfach nicht mehr gecacht die Entscheidung bleibt korrekt
+        if (g.policy == policy && g.resolved.size() < maxResolved) {
+            g.resolved.putIfAbsent(name, new Decision(userClass ? Kind.USER : Kind.ALLOWED_PARENT, type));
+        }
+    }
+
+    void putDenied(String name, SecurityPolicy policy) {
+        Generation g = generation;
+        if (g.policy != policy) {
+            return;
+        }
+        if (g.denied.size() >= maxDenied) {
+            // Beliebigen Eintrag verdrängen reicht um die Größe zu begrenzen
+            Iterator<String> it = g.denied.keySet().iterator();
+            if (it.hasNext()) {
+                it.next();
+                it.remove();
+                evictions.increment();
+            }
+        }
+        g.denied.put(name, Decision.DENIED);
+    }
+
+    private Generation generation(SecurityPolicy policy) {
+        Generation g = generation;
+        if (g.policy != policy) {
+            synchronized (this) {
+                g = generation;
+                if (g.policy != policy) {
+                    g = new Generation(policy);
+                    generation = g;
+                }
+            }
+        }
+        return g;
+    }
+
+    /**
+     * Bis zu max Namen die unter der aktuellen Generation aufgelöst wurden (eigene und Parent-Klassen)
+     */
+    List<String> resolvedNames(int max) {
+        return generation.resolved.keySet().stream().limit(max).toList();
+    }
+
+    Stats stats() {
+        Generation g = generation;
+        return new Stats(hits.sum(), misses.sum(), g.resolved.size(), g.denied.size(), evictions.sum());
+    }
+}
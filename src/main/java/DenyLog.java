@@ -0,0 +1,153 @@
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Begrenzt und bündelt die Log-Ausgaben für abgelehnte Klassen und Methoden
+ *
+ * Pro Log-Datei (logFile des Laufs) und Name wird die erste Ablehnung sofort geloggt alle
+ * weiteren im selben Fenster nur gezählt Ein Daemon-Thread schreibt am Ende jedes Fensters
+ * eine Zusammenfassung in dieselbe Datei ("... was blocked 10000 more times in the last
+ * 1000 ms") Insgesamt gibt es höchstens MAX_LINES_PER_WINDOW Einzelzeilen pro Fenster Code
+ * der Class.forName mit immer neuen Namen aufruft landet danach nur noch in einem
+ * Sammelzähler
+ *
+ * Der Aufruf für eine bereits geloggte Ablehnung sind zwei Map-Lookups und ein LongAdder
+ * ohne Allokation und ohne I/O
+ */
+final class DenyLog {
+
+    static final long WINDOW_MILLIS = 1_000;
+    static final int MAX_LINES_PER_WINDOW = 100;
+    static final int MAX_TRACKED_NAMES = 4_096;
+
+    private static final List<DenyLog> instances = new CopyOnWriteArrayList<>();
+    private static Thread flusher;
+    // Schlüssel für Ablehnungen ohne logFile im ThreadContext
+    private static final String NO_LOG_FILE = "";
+
+    private final Logger logger;
+    private final String kind;
+    // Fenster pro (logFile, Name): logFile -> Name -> im aktuellen Fenster unterdrückte Ablehnungen
+    // So zählt und meldet jede Log-Datei ihre eigenen Ablehnungen auch wenn Läufe parallel laufen
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, LongAdder>> windows = new ConcurrentHashMap<>();
+    private final AtomicInteger tracked = new AtomicInteger();
+    private final AtomicInteger lines = new AtomicInteger();
+    // Sammelzähler pro logFile
+    private final ConcurrentHashMap<String, LongAdder> overflow = new ConcurrentHashMap<>();
+
+    /**
+     * kind erscheint im Text: "The class '...'" bzw. "The method '...'"
+     */
+    DenyLog(Logger logger, String kind) {
+        this.logger = logger;
+        this.kind = kind;
+        instances.add(this);
+    }
+
+    void denied(String name) {
+        String logFile = Objects.requireNonNullElse(ThreadContext.get("logFile"), NO_LOG_FILE);
+        Map<String, LongAdder> window = windows.get(logFile);
+        LongAdder suppressed = window != null ? window.get(name) : null;
+        if (suppressed != null) {
+            suppressed.increment();
+            return;
+        }
+        if (lines.incrementAndGet() > MAX_LINES_PER_WINDOW || tracked.get() >= MAX_TRACKED_NAMES) {
+            overflow.computeIfAbsent(logFile, file -> new LongAdder()).increment();
+            ensureFlusher();
+            return;
+        }
+        suppressed = windows.computeIfAbsent(logFile, file -> new ConcurrentHashMap<>())
+                .putIfAbsent(name, new LongAdder());
+        if (suppressed != null) {
+            suppressed.increment();
+            return;
+        }
+        tracked.incrementAndGet();
+        ensureFlusher();
+        logger.warn("Access denied! The {} '{}' is blocked by security policy.", kind, name);
+    }
+
+    /**
+     * Schließt das aktuelle Fenster ab und schreibt die Zusammenfassungen jeweils in die
+     * Log-Datei des Laufs der die Ablehnungen verursacht hat
+     */
+    void flush() {
+        lines.set(0);
+        for (Map.Entry<String, ConcurrentHashMap<String, LongAdder>> file : windows.entrySet()) {
+            for (Map.Entry<String, LongAdder> entry : file.getValue().entrySet()) {
+                if (!file.getValue().remove(entry.getKey(), entry.getValue())) {
+                    continue;
+                }
+                tracked.decrementAndGet();
+                long suppressed = entry.getValue().sum();
+                if (suppressed > 0) {
+                    withLogFile(file.getKey(), () -> logger.warn(
+                            "Access denied! The {} '{}' was blocked {} more times in the last {} ms",
+                            kind, entry.getKey(), suppressed, WINDOW_MILLIS));
+                }
+            }
+        }
+        for (Map.Entry<String, LongAdder> entry : overflow.entrySet()) {
+            long dropped = entry.getValue().sumThenReset();
+            if (dropped > 0) {
+                withLogFile(entry.getKey(), () -> logger.warn(
+                        "Access denied! {} further {} denials were not logged in the last {} ms",
+                        dropped, kind, WINDOW_MILLIS));
+            }
+        }
+    }
+
+    /**
+     * Schreibt die offenen Zusammenfassungen aller Instanzen z.B. am Ende eines Laufs
+     */
+    static void flushAll() {
+        for (DenyLog log : instances) {
+            log.flush();
+        }
+    }
+
+    private static void withLogFile(String logFile, Runnable log) {
+        if (logFile.equals(NO_LOG_FILE)) {
+            log.run();
+            return;
+        }
+        // flushAll läuft auch im Thread eines Auftrags dessen logFile danach noch gilt
+        String previous = ThreadContext.get("logFile");
+        ThreadContext.put("logFile", logFile);
+        try {
+            log.run();
+        } finally {
+            if (previous != null) {
+                ThreadContext.put("logFile", previous);
+            } else {
+                ThreadContext.remove("logFile");
+            }
+        }
+    }
+
+    private static synchronized void ensureFlusher() {
+        if (flusher != null) {
+            return;
+        }
+        flusher = Thread.ofPlatform().name("deny-log-flusher").daemon(true)
+                .inheritInheritableThreadLocals(false).start(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(WINDOW_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                flushAll();
+            }
+        });
+    }
+}
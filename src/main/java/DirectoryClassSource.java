@@ -0,0 +1,120 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Klassen aus einem Verzeichnis mit .class-Dateien alle anderen Dateien außer .java
+ * sind Ressourcen
+ */
+final class DirectoryClassSource implements ClassSource {
+
+    private static final Logger logger = LogManager.getLogger(DirectoryClassSource.class);
+
+    // Ab dieser Größe wird gemappt statt in einen Heap-Buffer gelesen
+    private static final long MAP_THRESHOLD = 64 * 1024;
+
+    private final Map<String, Path> index;
+    private final Map<String, Path> resources;
+
+    DirectoryClassSource(Path root) throws IOException {
+        Map<String, Path> classes = new HashMap<>();
+        Map<String, Path> files = new HashMap<>();
+        try (Stream<Path> stream = Files.find(root, Integer.MAX_VALUE, (path, attributes) -> attributes.isRegularFile())) {
+            stream.forEach(file -> {
+                String relative = root.relativize(file).toString();
+                if (relative.endsWith(".class")) {
+                    String className = toClassName(relative);
+                    classes.put(className, file);
+                    logger.debug("Discovered user class: {}", className);
+                } else if (!relative.endsWith(".java")) {
+                    files.put(relative.replace(File.separatorChar, '/'), file);
+                }
+            });
+        }
+        this.index = Collections.unmodifiableMap(classes);
+        this.resources = Collections.unmodifiableMap(files);
+    }
+
+    static String toClassName(String relativePath) {
+        return relativePath.substring(0, relativePath.length() - ".class".length())
+                .replace(java.io.File.separatorChar, '.');
+    }
+
+    @Override
+    public boolean contains(String className) {
+        return index.containsKey(className);
+    }
+
+    @Override
+    public Set<String> classNames() {
+        return index.keySet();
+    }
+
+    @Override
+    public ByteBuffer read(String className) throws IOException {
+        Path classFile = index.get(className);
+        if (classFile == null) {
+            throw new IOException("No such class: " + className);
+        }
+        try (FileChannel channel = FileChannel.open(classFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // weiterlesen bis der Buffer voll ist
+            }
+            return buffer.flip();
+        }
+    }
+
+    @Override
+    public Set<String> resourceNames() {
+        return resources.keySet();
+    }
+
+    @Override
+    public long resourceSize(String name) throws IOException {
+        return Files.size(resource(name));
+    }
+
+    @Override
+    public InputStream openResource(String name) throws IOException {
+        Path file = resource(name);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD && size <= Integer.MAX_VALUE) {
+                // Das Mapping bleibt nach dem Schließen des Channels gültig
+                return new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            }
+        }
+        return Files.newInputStream(file);
+    }
+
+    private Path resource(String name) throws IOException {
+        Path file = resources.get(name);
+        if (file == null) {
+            throw new IOException("No such resource: " + name);
+        }
+        return file;
+    }
+
+    @Override
+    public void close() {
+        // Keine offenen Ressourcen Dateien werden pro read() geöffnet
+    }
+}
@@ -0,0 +1,168 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Kompiliert Quelldateien direkt in den Speicher ohne .class-Dateien zu schreiben
+ *
+ * Die Ergebnisse werden nach einem SHA-256 über alle Quelldateien (Pfad + Inhalt)
+ * gecacht Wird dieselbe Abgabe erneut eingereicht entfällt die Kompilierung
+ * Gecacht wird immer der ganze Quellbaum weil sich Klassen gegenseitig referenzieren
+ */
+final class InMemoryCompiler {
+
+    private static final Logger logger = LogManager.getLogger(InMemoryCompiler.class);
+
+    static final int DEFAULT_CACHE_ENTRIES = 256;
+
+    /**
+     * Ergebnis einer Kompilierung classes ist bei Fehlern leer
+     */
+    record Result(boolean success, Map<String, byte[]> classes, String diagnostics, boolean cached) {
+    }
+
+    private static final InMemoryCompiler SHARED = new InMemoryCompiler(DEFAULT_CACHE_ENTRIES);
+
+    private final Map<String, Map<String, byte[]>> cache;
+
+    InMemoryCompiler(int maxCacheEntries) {
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, byte[]>> eldest) {
+                return size() > maxCacheEntries;
+            }
+        });
+    }
+
+    static InMemoryCompiler shared() {
+        return SHARED;
+    }
+
+    /**
+     * Kompiliert alle .java-Dateien unter sourceDir oder liefert das gecachte Ergebnis
+     */
+    Result compile(Path sourceDir) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            logger.error("FEHLER: Keinen Java-Compiler gefunden Bitte mit einem JDK ausführen nicht nur JRE");
+            return new Result(false, Map.of(), "No system Java compiler", false);
+        }
+
+        List<Path> javaFiles;
+        try (Stream<Path> stream = Files.walk(sourceDir)) {
+            javaFiles = stream.filter(file -> file.toString().endsWith(".java")).sorted().collect(Collectors.toList());
+        }
+        if (javaFiles.isEmpty()) {
+            logger.warn("WARNUNG: Keine .java-Dateien in {} gefunden", sourceDir);
+            return new Result(true, Map.of(), "", false);
+        }
+
+        String key = sourceHash(sourceDir, javaFiles);
+        Map<String, byte[]> cached = cache.get(key);
+        if (cached != null) {
+            logger.info("Kompilierung aus Cache ({}, {} Klassen)", key.substring(0, 12), cached.size());
+            return new Result(true, cached, "", true);
+        }
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Map<String, byte[]> classes = new ConcurrentHashMap<>();
+        // StandardJavaFileManager ist nicht thread-safe also einer pro Kompilierung
+        try (StandardJavaFileManager standard = compiler.getStandardFileManager(diagnostics, Locale.ROOT, StandardCharsets.UTF_8);
+             MemoryFileManager fileManager = new MemoryFileManager(standard, classes)) {
+            Iterable<? extends JavaFileObject> units = standard.getJavaFileObjectsFromPaths(javaFiles);
+            boolean success = compiler.getTask(null, fileManager, diagnostics, List.of("-nowarn"), null, units).call();
+            String report = format(diagnostics);
+            if (!success) {
+                return new Result(false, Map.of(), report, false);
+            }
+            Map<String, byte[]> result = Collections.unmodifiableMap(new HashMap<>(classes));
+            cache.put(key, result);
+            return new Result(true, result, report, false);
+        }
+    }
+
+    private static String sourceHash(Path sourceDir, List<Path> javaFiles) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Path file : javaFiles) {
+                digest.update(sourceDir.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(Files.readAllBytes(file));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String format(DiagnosticCollector<JavaFileObject> diagnostics) {
+        StringBuilder sb = new StringBuilder();
+        for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+            if (d.getKind() != Diagnostic.Kind.ERROR) {
+                continue;
+            }
+            String file = d.getSource() != null ? d.getSource().getName() : "?";
+            sb.append(file).append(':').append(d.getLineNumber()).append(": ")
+                    .append(d.getMessage(Locale.ROOT)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Leitet alle .class-Ausgaben in die übergebene Map um
+     */
+    private static final class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+        private final Map<String, byte[]> classes;
+
+        private MemoryFileManager(StandardJavaFileManager fileManager, Map<String, byte[]> classes) {
+            super(fileManager);
+            this.classes = classes;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                   FileObject sibling) {
+            return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    return new ByteArrayOutputStream() {
+                        @Override
+                        public void close() {
+                            classes.put(className, toByteArray());
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,138 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
+/**
+ * Klassen aus einer JAR-Datei
+ *
+ * Der Index enthält nur die Einträge aus dem zentralen Verzeichnis der JAR
+ * Entpackt wird erst beim Lesen und zwar direkt in einen passend großen Buffer
+ * Mit einem Präfix (z.B. "BOOT-INF/classes/") zählen nur Einträge darunter
+ */
+final class JarClassSource implements ClassSource {
+
+    private static final Logger logger = LogManager.getLogger(JarClassSource.class);
+
+    private final JarFile jarFile;
+    private final Map<String, JarEntry> index;
+    private final Map<String, JarEntry> resources;
+
+    JarClassSource(Path jarPath) throws IOException {
+        this(jarPath, "");
+    }
+
+    JarClassSource(Path jarPath, String prefix) throws IOException {
+        this.jarFile = new JarFile(jarPath.toFile());
+        Map<String, JarEntry> classes = new HashMap<>();
+        Map<String, JarEntry> files = new HashMap<>();
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            if (!entry.getName().startsWith(prefix) || entry.isDirectory()) {
+                continue;
+            }
+            if (entry.getName().endsWith(".class")) {
+                String className = entry.getName()
+                        .substring(prefix.length(), entry.getName().length() - ".class".length())
+                        .replace('/', '.');
+                classes.put(className, entry);
+                logger.debug("Discovered user class from JAR: {}", className);
+            } else if (!entry.getName().endsWith(".java")) {
+                files.put(entry.getName().substring(prefix.length()), entry);
+            }
+        }
+        this.index = Collections.unmodifiableMap(classes);
+        this.resources = Collections.unmodifiableMap(files);
+    }
+
+    @Override
+    public boolean contains(String className) {
+        return index.containsKey(className);
+    }
+
+    @Override
+    public Set<String> classNames() {
+        return index.keySet();
+    }
+
+    @Override
+    public ByteBuffer read(String className) throws IOException {
+        JarEntry entry = index.get(className);
+        if (entry == null) {
+            throw new IOException("No such class: " + className);
+        }
+        try (InputStream is = jarFile.getInputStream(entry)) {
+            long size = entry.getSize();
+            if (size < 0) {
+                return ByteBuffer.wrap(is.readAllBytes());
+            }
+            // Direkt in ein Array der Größe aus dem Verzeichnis lesen damit nur einmal kopiert wird
+            // Die Angabe stammt vom Einreichenden passt der Inhalt nicht ist die Klasse unbrauchbar
+            if (size > maxInflatedSize(entry)) {
+                throw new IOException("Implausible size " + size + " declared for " + entry.getName());
+            }
+            byte[] bytes = new byte[(int) size];
+            int read = is.readNBytes(bytes, 0, bytes.length);
+            if (read < bytes.length || is.read() != -1) {
+                throw new IOException("Size of " + entry.getName() + " does not match its directory entry (" + size + " bytes)");
+            }
+            return ByteBuffer.wrap(bytes);
+        }
+    }
+
+    /**
+     * Obergrenze für den entpackten Inhalt Deflate packt höchstens etwa 1032:1
+     */
+    private static long maxInflatedSize(JarEntry entry) {
+        long compressed = entry.getCompressedSize();
+        if (compressed < 0) {
+            return Integer.MAX_VALUE - 8;
+        }
+        long max = entry.getMethod() == ZipEntry.STORED ? compressed : compressed * 1032;
+        return Math.min(max, Integer.MAX_VALUE - 8);
+    }
+
+    @Override
+    public Set<String> resourceNames() {
+        return resources.keySet();
+    }
+
+    /**
+     * Angabe aus dem zentralen Verzeichnis der JAR nicht geprüft Beim Lesen zählt der Aufrufer selbst
+     */
+    @Override
+    public long resourceSize(String name) throws IOException {
+        return resource(name).getSize();
+    }
+
+    @Override
+    public InputStream openResource(String name) throws IOException {
+        // Wird beim Lesen entpackt nie komplett in den Heap kopiert
+        return jarFile.getInputStream(resource(name));
+    }
+
+    private JarEntry resource(String name) throws IOException {
+        JarEntry entry = resources.get(name);
+        if (entry == null) {
+            throw new IOException("No such resource: " + name);
+        }
+        return entry;
+    }
+
+    @Override
+    public void close() throws IOException {
+        jarFile.close();
+    }
+}
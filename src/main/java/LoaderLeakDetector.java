@@ -0,0 +1,244 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Meldet BlockingClassLoader die nach ihrem Lauf nicht vom GC freigegeben werden
+ *
+ * Nach close() merkt sich SandboxRunner den Loader hier nur über eine WeakReference Wird
+ * der Loader eingesammelt landet die Referenz in der ReferenceQueue und gilt als freigegeben
+ * (samt Metaspace seiner Klassen) Ist er graceSeconds nach dem Lauf noch da wird einmal
+ * System.gc() angestoßen und wenn er danach immer noch erreichbar ist als Leck gemeldet
+ *
+ * Zur Meldung gehört die Art des Halters soweit sie sich ohne Heap-Dump erkennen lässt:
+ *   thread running user code     ein Thread hat noch Frames aus dem Loader (aufgegebener Lauf)
+ *   thread context class loader  ein Thread hat den Loader als Kontext-ClassLoader
+ *   ThreadLocal                  ein ThreadLocal-Wert stammt aus dem Loader (nur mit
+ *                                --add-opens java.base/java.lang=ALL-UNNAMED sichtbar)
+ *   static or cache in parent    sonst z.B. ein statisches Feld oder ein Cache einer Host-Klasse
+ * Genaueres liefert ein Heap-Dump (jcmd PID GC.heap_dump) mit dem Loader-Namen aus der Meldung
+ *
+ * Mit -XX:+DisableExplicitGC bleibt System.gc() wirkungslos dann können Loader als Leck
+ * gemeldet werden die der nächste echte GC noch freigegeben hätte
+ */
+final class LoaderLeakDetector {
+
+    private static final Logger logger = LogManager.getLogger(LoaderLeakDetector.class);
+
+    static final long DEFAULT_GRACE_SECONDS = 60;
+
+    // null = keine Überwachung
+    private static volatile LoaderLeakDetector shared;
+
+    /**
+     * Momentaufnahme der Zähler unloadedClasses zählt für die ganze JVM
+     */
+    record Stats(long tracked, long reclaimed, int pending, long leaked, long unloadedClasses) {
+
+        @Override
+        public String toString() {
+            return "tracked=" + tracked + " reclaimed=" + reclaimed + " pending=" + pending + " leaked=" + leaked
+                    + " unloadedClasses=" + unloadedClasses;
+        }
+    }
+
+    /**
+     * Ein geschlossener Loader Hält selbst nur die WeakReference und ein paar Angaben für die Meldung
+     */
+    private static final class Tracked extends WeakReference<BlockingClassLoader> {
+
+        final String runId;
+        final String loaderName;
+        final long classesDefined;
+        final long closedAt = System.nanoTime();
+        boolean gcRequested;
+        boolean reported;
+
+        Tracked(BlockingClassLoader loader, String runId, ReferenceQueue<BlockingClassLoader> queue) {
+            super(loader, queue);
+            this.runId = runId;
+            this.loaderName = loader.getName();
+            this.classesDefined = loader.metrics().classesDefined();
+        }
+    }
+
+    private final long graceNanos;
+    private final ReferenceQueue<BlockingClassLoader> queue = new ReferenceQueue<>();
+    private final Set<Tracked> alive = ConcurrentHashMap.newKeySet();
+    private final LongAdder tracked = new LongAdder();
+    private final LongAdder reclaimed = new LongAdder();
+    private final LongAdder leaked = new LongAdder();
+    private final ScheduledExecutorService checker;
+
+    private LoaderLeakDetector(long graceSeconds) {
+        this.graceNanos = TimeUnit.SECONDS.toNanos(graceSeconds);
+        this.checker = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("loader-leak-check").daemon().inheritInheritableThreadLocals(false).factory());
+        long period = Math.max(1_000, TimeUnit.SECONDS.toMillis(graceSeconds) / 4);
+        checker.scheduleWithFixedDelay(this::check, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    static LoaderLeakDetector shared() {
+        return shared;
+    }
+
+    /**
+     * Aktiviert die Überwachung für alle folgenden Läufe graceSeconds 0 schaltet sie ab
+     */
+    static void configure(long graceSeconds) {
+        LoaderLeakDetector previous = shared;
+        shared = graceSeconds > 0 ? new LoaderLeakDetector(graceSeconds) : null;
+        if (previous != null) {
+            previous.checker.shutdownNow();
+        }
+        if (graceSeconds > 0) {
+            logger.info("Loader leak check: loaders still reachable {} s after their run are reported", graceSeconds);
+        }
+    }
+
+    /**
+     * Beobachtet einen geschlossenen Loader runId erscheint in der Meldung
+     */
+    void track(BlockingClassLoader loader, String runId) {
+        alive.add(new Tracked(loader, runId, queue));
+        tracked.increment();
+    }
+
+    Stats stats() {
+        return new Stats(tracked.sum(), reclaimed.sum(), alive.size(), leaked.sum(),
+                ManagementFactory.getClassLoadingMXBean().getUnloadedClassCount());
+    }
+
+    private void check() {
+        try {
+            drain();
+            long now = System.nanoTime();
+            List<Tracked> overdue = new ArrayList<>();
+            boolean needGc = false;
+            for (Tracked t : alive) {
+                if (!t.reported && now - t.closedAt >= graceNanos) {
+                    overdue.add(t);
+                    needGc |= !t.gcRequested;
+                    t.gcRequested = true;
+                }
+            }
+            if (overdue.isEmpty()) {
+                return;
+            }
+            if (needGc) {
+                // Loader und Klassen werden oft erst bei einer vollen Collection entladen
+                System.gc();
+            }
+            Map<Thread, StackTraceElement[]> stacks = null;
+            for (Tracked t : overdue) {
+                BlockingClassLoader loader = t.get();
+                if (loader == null) {
+                    continue;
+                }
+                if (stacks == null) {
+                    stacks = Thread.getAllStackTraces();
+                }
+                t.reported = true;
+                leaked.increment();
+                logger.warn("WARNUNG: Loader {} von Auftrag {} ist {} s nach dem Lauf noch erreichbar ({} Klassen) gehalten von: {}",
+                        t.loaderName, t.runId, TimeUnit.NANOSECONDS.toSeconds(now - t.closedAt), t.classesDefined,
+                        String.join(", ", retainedBy(loader, stacks)));
+            }
+            drain();
+        } catch (RuntimeException e) {
+            logger.warn("Loader leak check failed", e);
+        }
+    }
+
+    private void drain() {
+        Reference<? extends BlockingClassLoader> ref;
+        while ((ref = queue.poll()) != null) {
+            if (alive.remove(ref)) {
+                reclaimed.increment();
+                Tracked t = (Tracked) ref;
+                if (t.reported) {
+                    logger.info("Loader {} von Auftrag {} wurde doch noch freigegeben", t.loaderName, t.runId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Art der Halter soweit sie sich an den laufenden Threads erkennen lässt
+     */
+    private static Set<String> retainedBy(BlockingClassLoader loader, Map<Thread, StackTraceElement[]> stacks) {
+        Set<String> reasons = new LinkedHashSet<>();
+        boolean threadLocals = Thread.class.getModule().isOpen("java.lang", LoaderLeakDetector.class.getModule());
+        for (Map.Entry<Thread, StackTraceElement[]> entry : stacks.entrySet()) {
+            Thread thread = entry.getKey();
+            for (StackTraceElement frame : entry.getValue()) {
+                if (loader.getName().equals(frame.getClassLoaderName())) {
+                    reasons.add("thread running user code (" + thread.getName() + ")");
+                    break;
+                }
+            }
+            if (thread.getContextClassLoader() == loader) {
+                reasons.add("thread context class loader (" + thread.getName() + ")");
+            }
+            if (threadLocals && holdsThreadLocal(thread, loader)) {
+                reasons.add("ThreadLocal (" + thread.getName() + ")");
+            }
+        }
+        if (reasons.isEmpty()) {
+            reasons.add("static or cache in parent");
+        }
+        return reasons;
+    }
+
+    /**
+     * Sucht in den (vererbbaren) ThreadLocals des Threads nach Werten aus dem Loader
+     */
+    private static boolean holdsThreadLocal(Thread thread, ClassLoader loader) {
+        try {
+            for (String mapField : new String[]{"threadLocals", "inheritableThreadLocals"}) {
+                Field field = Thread.class.getDeclaredField(mapField);
+                field.setAccessible(true);
+                Object map = field.get(thread);
+                if (map == null) {
+                    continue;
+                }
+                Field tableField = map.getClass().getDeclaredField("table");
+                tableField.setAccessible(true);
+                for (Object entry : (Object[]) tableField.get(map)) {
+                    if (entry == null) {
+                        continue;
+                    }
+                    Field valueField = entry.getClass().getDeclaredField("value");
+                    valueField.setAccessible(true);
+                    Object value = valueField.get(entry);
+                    Object key = ((Reference<?>) entry).get();
+                    if (value == loader || loadedBy(value, loader) || loadedBy(key, loader)) {
+                        return true;
+                    }
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.debug("Could not inspect ThreadLocals of {}: {}", thread.getName(), e.toString());
+        }
+        return false;
+    }
+
+    private static boolean loadedBy(Object value, ClassLoader loader) {
+        return value != null && value.getClass().getClassLoader() == loader;
+    }
+}
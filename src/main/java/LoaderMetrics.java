@@ -0,0 +1,192 @@
+import org.json.JSONObject;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Zähler eines BlockingClassLoader
+ *
+ * Alles läuft über LongAdder damit parallele loadClass-Aufrufe sich nicht gegenseitig
+ * ausbremsen Die Latenz der Policy-Prüfung landet in einem Histogramm mit
+ * Zweierpotenz-Buckets (Bucket i = bis 2^i ns) Abgelehnte Namen werden pro Name gezählt
+ * aber nur für die ersten MAX_DENIED_NAMES verschiedenen Namen der Rest landet unter "<other>"
+ *
+ * Metaspace und Anzahl geladener Klassen werden beim Erstellen (bzw. reset) als Ausgangswert
+ * gemerkt der Snapshot enthält die Differenz seitdem Beide Werte gelten für die ganze JVM
+ * laufen mehrere Aufträge parallel enthalten die Differenzen auch deren Klassen
+ */
+final class LoaderMetrics {
+
+    static final int MAX_DENIED_NAMES = 128;
+    private static final String OTHER = "<other>";
+    private static final int BUCKETS = 40;
+
+    private final LongAdder classesDefined = new LongAdder();
+    private final LongAdder bytesDefined = new LongAdder();
+    private final LongAdder defineNanos = new LongAdder();
+    private final LongAdder parentDelegations = new LongAdder();
+    private final LongAdder denied = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> deniedByName = new ConcurrentHashMap<>();
+    private final LongAdder[] policyCheckBuckets = new LongAdder[BUCKETS];
+    private volatile long baselineMetaspace;
+    private volatile int baselineClasses;
+
+    LoaderMetrics() {
+        for (int i = 0; i < BUCKETS; i++) {
+            policyCheckBuckets[i] = new LongAdder();
+        }
+        baseline();
+    }
+
+    private void baseline() {
+        baselineMetaspace = metaspaceUsed();
+        baselineClasses = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+    }
+
+    /**
+     * Setzt alle Zähler zurück z.B. nach dem Vorwärmen eines Loaders im LoaderPool
+     * Darf nicht parallel zu einem Lauf aufgerufen werden
+     */
+    void reset() {
+        classesDefined.reset();
+        bytesDefined.reset();
+        defineNanos.reset();
+        parentDelegations.reset();
+        denied.reset();
+        deniedByName.clear();
+        for (LongAdder bucket : policyCheckBuckets) {
+            bucket.reset();
+        }
+        baseline();
+    }
+
+    void classDefined(int bytes, long nanos) {
+        classesDefined.increment();
+        bytesDefined.add(bytes);
+        defineNanos.add(nanos);
+    }
+
+    void parentDelegation() {
+        parentDelegations.increment();
+    }
+
+    void policyCheck(long nanos) {
+        int bucket = nanos <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(nanos - 1);
+        policyCheckBuckets[Math.min(bucket, BUCKETS - 1)].increment();
+    }
+
+    void denied(String name) {
+        denied.increment();
+        LongAdder counter = deniedByName.get(name);
+        if (counter == null) {
+            counter = deniedByName.size() < MAX_DENIED_NAMES
+                    ? deniedByName.computeIfAbsent(name, k -> new LongAdder())
+                    : deniedByName.computeIfAbsent(OTHER, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * Verteilung der Policy-Prüfzeiten Perzentile sind Bucket-Obergrenzen also auf
+     * die nächste Zweierpotenz aufgerundet
+     */
+    record Histogram(long count, long p50Nanos, long p90Nanos, long p99Nanos, long maxNanos) {
+
+        JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("count", count);
+            json.put("p50", p50Nanos);
+            json.put("p90", p90Nanos);
+            json.put("p99", p99Nanos);
+            json.put("max", maxNanos);
+            return json;
+        }
+    }
+
+    /**
+     * Momentaufnahme der Zähler plus Speicherstand der JVM zum selben Zeitpunkt
+     */
+    record Snapshot(long classesDefined, long bytesDefined, long defineNanos, long parentDelegations,
+                    long denied, Map<String, Long> deniedByName, Histogram policyCheck,
+                    long heapUsedBytes, long metaspaceUsedBytes, int loadedClasses,
+                    long metaspaceDeltaBytes, int loadedClassesDelta) {
+
+        JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("classesDefined", classesDefined);
+            json.put("bytesDefined", bytesDefined);
+            json.put("defineMs", defineNanos / 1_000_000.0);
+            json.put("parentDelegations", parentDelegations);
+            json.put("denied", denied);
+            json.put("deniedByName", new JSONObject(deniedByName));
+            json.put("policyCheckNanos", policyCheck.toJson());
+            JSONObject memory = new JSONObject();
+            memory.put("heapUsedBytes", heapUsedBytes);
+            memory.put("metaspaceUsedBytes", metaspaceUsedBytes);
+            memory.put("loadedClasses", loadedClasses);
+            memory.put("metaspaceDeltaBytes", metaspaceDeltaBytes);
+            memory.put("loadedClassesDelta", loadedClassesDelta);
+            json.put("memory", memory);
+            return json;
+        }
+    }
+
+    Snapshot snapshot() {
+        Map<String, Long> names = new LinkedHashMap<>();
+        deniedByName.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, LongAdder> e) -> e.getValue().sum()).reversed())
+                .limit(20)
+                .forEach(e -> names.put(e.getKey(), e.getValue().sum()));
+
+        long metaspace = metaspaceUsed();
+        int loadedClasses = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+        return new Snapshot(classesDefined.sum(), bytesDefined.sum(), defineNanos.sum(), parentDelegations.sum(),
+                denied.sum(), names, histogram(),
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), metaspace, loadedClasses,
+                metaspace - baselineMetaspace, loadedClasses - baselineClasses);
+    }
+
+    static long metaspaceUsed() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getName().equals("Metaspace")) {
+                return pool.getUsage().getUsed();
+            }
+        }
+        return 0;
+    }
+
+    private Histogram histogram() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        int highest = -1;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = policyCheckBuckets[i].sum();
+            total += counts[i];
+            if (counts[i] > 0) {
+                highest = i;
+            }
+        }
+        if (total == 0) {
+            return new Histogram(0, 0, 0, 0, 0);
+        }
+        return new Histogram(total, percentile(counts, total, 0.50), percentile(counts, total, 0.90),
+                percentile(counts, total, 0.99), 1L << highest);
+    }
+
+    private static long percentile(long[] counts, long total, double fraction) {
+        long threshold = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= threshold) {
+                return 1L << i;
+            }
+        }
+        return 1L << (counts.length - 1);
+    }
+}
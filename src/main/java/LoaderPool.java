@@ -0,0 +1,283 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Vorgewärmte BlockingClassLoader für wiederholt eingereichte JARs
+ *
+ * Schlüssel ist (SHA-256 der JAR, Inhalts-Hash der Policy) Pro Schlüssel liegen bis zu
+ * size fertig gebaute Loader bereit Ein Loader wird genau einmal ausgeliehen und danach
+ * geschlossen ein Hintergrund-Thread baut sofort Ersatz Der Ersatz lädt vorab alle Klassen
+ * die der letzte Lauf desselben Schlüssels aufgelöst hat (eigene Klassen werden definiert
+ * aber nicht initialisiert statische Zustände bleiben also pro Lauf getrennt)
+ *
+ * Der erste Lauf eines Artefakts baut seinen Loader selbst (miss) und füllt den Pool
+ * Schlüssel die idleMillis lang nicht ausgeliehen wurden werden samt Loadern verworfen
+ */
+final class LoaderPool {
+
+    private static final Logger logger = LogManager.getLogger(LoaderPool.class);
+
+    static final long DEFAULT_IDLE_MILLIS = 300_000;
+    static final int MAX_WARM_CLASSES = 4_096;
+
+    // null = kein Pool jeder Lauf baut seinen Loader selbst
+    private static volatile LoaderPool shared;
+
+    record Key(String artifactHash, String policyHash) {
+    }
+
+    /**
+     * Momentaufnahme der Zähler
+     */
+    record Stats(long hits, long misses, long created, long discarded, long evicted, int idle, int artifacts) {
+
+        double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d misses=%d hitRate=%.1f%% created=%d discarded=%d evicted=%d idle=%d artifacts=%d",
+                    hits, misses, hitRate() * 100, created, discarded, evicted, idle, artifacts);
+        }
+    }
+
+    /**
+     * Bereitliegende Loader eines Schlüssels pending zählt Loader die gerade gebaut werden
+     */
+    private static final class Slot {
+
+        final Key key;
+        // Pfad des letzten Auftrags derselbe Inhalt kann unter wechselnden Pfaden hochgeladen werden
+        volatile Path jar;
+        final String configPath;
+        final ConcurrentLinkedDeque<BlockingClassLoader> idle = new ConcurrentLinkedDeque<>();
+        final AtomicInteger pending = new AtomicInteger();
+        volatile long lastUsed = System.nanoTime();
+        volatile List<String> warmClasses = List.of();
+
+        Slot(Key key, Path jar, String configPath) {
+            this.key = key;
+            this.jar = jar;
+            this.configPath = configPath;
+        }
+    }
+
+    /**
+     * Ein ausgeliehener Loader close() merkt sich die aufgelösten Klassen für den
+     * nächsten Ersatz und schließt den Loader
+     */
+    final class Lease implements AutoCloseable {
+
+        private final Slot slot;
+        private final BlockingClassLoader loader;
+        private final boolean hit;
+
+        private Lease(Slot slot, BlockingClassLoader loader, boolean hit) {
+            this.slot = slot;
+            this.loader = loader;
+            this.hit = hit;
+        }
+
+        BlockingClassLoader loader() {
+            return loader;
+        }
+
+        boolean hit() {
+            return hit;
+        }
+
+        @Override
+        public void close() {
+            slot.warmClasses = loader.resolvedClassNames(MAX_WARM_CLASSES);
+            closeQuietly(loader);
+        }
+    }
+
+    private final int size;
+    private final long idleNanos;
+    private final ConcurrentHashMap<Key, Slot> slots = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService warmer;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    LoaderPool(int size, long idleMillis) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1: " + size);
+        }
+        this.size = size;
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        this.warmer = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("loader-pool-warmer").daemon().inheritInheritableThreadLocals(false).factory());
+        long period = Math.max(1_000, idleMillis / 4);
+        warmer.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    static LoaderPool shared() {
+        return shared;
+    }
+
+    /**
+     * Aktiviert den Pool für alle folgenden Läufe mit JARs
+     */
+    static void configure(int size, long idleMillis) {
+        LoaderPool previous = shared;
+        shared = new LoaderPool(size, idleMillis);
+        if (previous != null) {
+            previous.shutdown();
+        }
+        logger.info("Loader pool: {} loaders per artifact, idle eviction after {} ms", size, idleMillis);
+    }
+
+    /**
+     * Leiht einen Loader für die JAR unter der Konfiguration aus Ist keiner bereit wird
+     * er im aufrufenden Thread gebaut In beiden Fällen wird der Pool im Hintergrund aufgefüllt
+     */
+    Lease checkout(Path jar, String configPath) throws IOException {
+        Key key = new Key(BytecodeCache.shared().archiveHash(jar), currentPolicyHash(configPath));
+        Slot slot = slots.computeIfAbsent(key, k -> new Slot(k, jar, configPath));
+        slot.jar = jar;
+        slot.lastUsed = System.nanoTime();
+
+        BlockingClassLoader loader;
+        while ((loader = slot.idle.pollFirst()) != null) {
+            // Policy wurde seit dem Vorwärmen neu geladen der Entscheidungs-Cache ist dann wertlos
+            if (loader.policyHash().equals(key.policyHash())) {
+                hits.increment();
+                replenish(slot);
+                return new Lease(slot, loader, true);
+            }
+            discarded.increment();
+            closeQuietly(loader);
+        }
+        misses.increment();
+        loader = newLoader(jar, slot.configPath);
+        replenish(slot);
+        return new Lease(slot, loader, false);
+    }
+
+    Stats stats() {
+        int idle = 0;
+        for (Slot slot : slots.values()) {
+            idle += slot.idle.size();
+        }
+        return new Stats(hits.sum(), misses.sum(), created.sum(), discarded.sum(), evicted.sum(), idle, slots.size());
+    }
+
+    /**
+     * Beendet den Hintergrund-Thread und schließt alle bereitliegenden Loader
+     */
+    void shutdown() {
+        warmer.shutdownNow();
+        for (Slot slot : slots.values()) {
+            slots.remove(slot.key, slot);
+            drain(slot);
+        }
+    }
+
+    private void replenish(Slot slot) {
+        while (true) {
+            int pending = slot.pending.get();
+            if (slot.idle.size() + pending >= size) {
+                return;
+            }
+            if (slot.pending.compareAndSet(pending, pending + 1)) {
+                warmer.execute(() -> {
+                    try {
+                        warm(slot);
+                    } finally {
+                        slot.pending.decrementAndGet();
+                    }
+                });
+            }
+        }
+    }
+
+    private void warm(Slot slot) {
+        if (slots.get(slot.key) != slot) {
+            return;
+        }
+        Path jar = slot.jar;
+        BlockingClassLoader loader;
+        try {
+            loader = newLoader(jar, slot.configPath);
+        } catch (RuntimeException e) {
+            logger.warn("Could not prepare pooled loader for {}: {}", jar, e.toString());
+            return;
+        }
+        // JAR inzwischen gelöscht ein leerer Loader würde jeden Lauf mit CLASS_NOT_FOUND beenden
+        if (loader.classNames().isEmpty()) {
+            logger.warn("Pooled loader for {} has no classes, dropping it", jar);
+            discarded.increment();
+            closeQuietly(loader);
+            return;
+        }
+        long start = System.nanoTime();
+        int loaded = loader.prewarm(slot.warmClasses);
+        logger.debug("Prewarmed loader for {} with {} classes in {} ms",
+                jar, loaded, (System.nanoTime() - start) / 1_000_000);
+        slot.idle.addLast(loader);
+        // Schlüssel wurde inzwischen verdrängt
+        if (slots.get(slot.key) != slot) {
+            drain(slot);
+        }
+    }
+
+    private BlockingClassLoader newLoader(Path jar, String configPath) {
+        created.increment();
+        return new BlockingClassLoader(ClassLoader.getSystemClassLoader(), jar.toString(), configPath);
+    }
+
+    private void evictIdle() {
+        long now = System.nanoTime();
+        for (Slot slot : slots.values()) {
+            if (now - slot.lastUsed > idleNanos && slots.remove(slot.key, slot)) {
+                evicted.add(drain(slot));
+                logger.info("Evicted idle loader pool for {}", slot.jar);
+            }
+        }
+    }
+
+    private static int drain(Slot slot) {
+        int count = 0;
+        BlockingClassLoader loader;
+        while ((loader = slot.idle.pollFirst()) != null) {
+            closeQuietly(loader);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Hash der Policy wie sie ein neuer Loader jetzt sehen würde
+     */
+    private static String currentPolicyHash(String configPath) {
+        try (PolicyRegistry.Handle handle = PolicyRegistry.shared().acquire(configPath)) {
+            return handle.current().contentHash();
+        }
+    }
+
+    private static void closeQuietly(BlockingClassLoader loader) {
+        try {
+            loader.close();
+        } catch (IOException e) {
+            logger.debug("Could not close pooled loader: {}", e.toString());
+        }
+    }
+}
@@ -1,28 +1,60 @@
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.ThreadContext;
+import org.apache.logging.log4j.core.LoggerContext;
 
-import javax.tools.JavaCompiler;
-import javax.tools.ToolProvider;
+import org.json.JSONObject;
+
+import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Main entry point für die Sandbox
  *
- * pathfrom=/path/to/source/or/jar  (Nötig)
+ * pathfrom=/path/to/source/or/jar  (Nötig) Auch mehrere Verzeichnisse/JARs mit File.pathSeparator
  * main-class=com.example.UserApp   (Nötig)
- * pathto=/path/to/compile/output   (Optional Standard ".")
+ * pathto=/path/to/compile/output   (Optional ohne wird im Speicher kompiliert)
  * config=/path/to/config.json      (Optional Standard "config.json")
  * log=/path/to/cclsandbox.log      (Optional Standard "cclsandbox.log")
+ * prescan=true                     (Optional) Alle Klassen vor dem Start statisch prüfen
+ * prefetch=true                   (Optional) Von der Main-Klasse erreichbare Klassen parallel vorladen (siehe ClassPrefetcher)
+ * cache=/path/to/cache/dir         (Optional) Bytecode-Cache auf der Platte für JARs
+ * metrics=/path/to/metrics.json    (Optional) Ergebnis mit Verbrauch und Loader-Metriken als JSON
+ * asynclog=true                    (Optional) Log-Ausgaben asynchron schreiben (wie -Dsandbox.asyncLog=true)
+ * capture=true                     (Optional) Ausgabe des Benutzercodes begrenzt puffern und erst am Ende ausgeben
+ *
+ * mode=server                      Startet den Server-Modus (siehe SandboxServer)
+ * port=7070                        (Optional) Port für den Server-Modus
+ * threads=N                        (Optional) Parallele Aufträge im Server-Modus
+ * pool=N                           (Optional) N vorgewärmte Loader pro JAR im Server-Modus (siehe LoaderPool)
+ * pool-idle=ms                     (Optional) Loader einer JAR nach so langer Pause verwerfen
+ *
+ * mode=batch                       Arbeitet eine JSON-Lines-Datei mit Aufträgen ab (siehe SandboxBatch)
+ * jobs=/path/to/jobs.jsonl         (Nötig für batch) Ein Auftrag pro Zeile
+ * results=/path/to/results.jsonl   (Optional) Ergebnisse pro Zeile Standard "results.jsonl"
+ * resume=true                      (Optional) Aufträge mit vorhandenem Ergebnis überspringen
+ *                                  threads=N gilt auch hier
+ *
+ * leak-check=seconds               (Optional) Server/Batch: Loader melden die so lange nach ihrem Lauf noch
+ *                                  erreichbar sind (siehe LoaderLeakDetector) Standard 60 0 = aus
+ *
+ * mode=supervisor                  Server-Protokoll wie mode=server aber jeder Auftrag läuft in einer
+ *                                  vorgestarteten Worker-JVM (siehe WorkerPool) port=... gilt auch hier
+ * workers=N                        (Optional) Anzahl Worker-JVMs Standard Anzahl der CPU-Kerne
+ * worker-jobs=N                    (Optional) Worker nach N Aufträgen ersetzen Standard 100
+ * cds-archive=/path/to/archive     (Optional) Worker mit dem Archiv aus mode=cds starten
+ * mode=worker                      Intern: eine Worker-JVM des Supervisors (Aufträge über stdin/stdout)
+ *
+ * mode=cds                         Nimmt den Lauf in einer eigenen JVM auf und schreibt ein CDS-Archiv (siehe CdsArchive)
+ * cds-archive=/path/to/archive     (Optional) Ziel des Archivs Standard "cclsandbox.jsa"
  */
 public class Main {
 
@@ -31,164 +63,174 @@ public class Main {
     public static void main(String[] args) {
         Map<String, String> params = parseArgs(args);
 
+        if ("true".equals(params.get("asynclog"))) {
+            // Die Konfiguration wurde schon beim Laden von Main gelesen also neu einlesen Gemeint
+            // ist der Kontext dieses ClassLoaders (Configurator.reconfigure träfe den Default-Kontext)
+            System.setProperty("sandbox.asyncLog", "true");
+            ((LoggerContext) LogManager.getContext(Main.class.getClassLoader(), false)).reconfigure();
+        }
+
         String logFile = params.getOrDefault("log", "cclsandbox.log");
         // Setzt die Variable für log4j2.xml
         ThreadContext.put("logFile", logFile);
 
-        if (params.containsKey("help") || !params.containsKey("pathfrom") || !params.containsKey("main-class")) {
-            printUsage();
-            return;
+        if (params.containsKey("cache")) {
+            try {
+                BytecodeCache.configure(Paths.get(params.get("cache")), BytecodeCache.DEFAULT_MEMORY_BYTES);
+            } catch (IOException e) {
+                logger.warn("WARNUNG: Bytecode-Cache nicht verfügbar: {}", params.get("cache"), e);
+            }
         }
 
-        String pathFrom = params.get("pathfrom");
-        String mainClassName = params.get("main-class");
-        String pathFromConfig = params.getOrDefault("config", "config.json");
-        // Standard-Ausgabepfad ist das aktuelle Verzeichnis
-        String pathFromCompileTo = params.getOrDefault("pathto", ".");
-        String effectiveUserCodePath;
-
-        logger.info("Starte Sandbox...");
-        logger.info("Security Config: " + pathFromConfig);
-        logger.info("User Main Class: " + mainClassName);
-        logger.info("Log File: " + logFile);
+        String mode = params.getOrDefault("mode", "");
+        if (mode.equals("server") || mode.equals("batch") || mode.equals("worker")) {
+            BytecodeCache.longLived();
+        }
 
-        Path sourcePath = Paths.get(pathFrom);
-        boolean isJar = pathFrom.endsWith(".jar") && Files.isRegularFile(sourcePath);
-        boolean isDir = Files.isDirectory(sourcePath);
+        if ("cds".equals(params.get("mode")) && !params.containsKey("help")
+                && params.containsKey("pathfrom") && params.containsKey("main-class")) {
+            System.exit(CdsArchive.record(params));
+        }
 
-        try {
-            if (isJar) {
-                logger.info("Lade von JAR: " + pathFrom);
-                effectiveUserCodePath = pathFrom;
-            } else if (isDir) {
-                // Prüfen ob das Verzeichnis .java-Dateien enthält
-                boolean hasJavaFiles;
-                try (Stream<Path> stream = Files.walk(sourcePath)) {
-                    hasJavaFiles = stream.anyMatch(file -> file.toString().endsWith(".java"));
-                } catch (IOException e) {
-                    logger.error("ERROR: Konnte Quellverzeichnis nicht prüfen: " + pathFrom, e);
-                    System.exit(1);
-                    return;
-                }
+        if ("batch".equals(params.get("mode")) && !params.containsKey("help") && params.containsKey("jobs")) {
+            System.exit(runBatch(params, logFile));
+        }
 
-                if (hasJavaFiles) {
-                    logger.info("Lade von Quellverzeichnis: " + pathFrom);
-                    logger.info("Kompiliere nach: " + pathFromCompileTo);
-
-                    boolean compiled = compileSourceFiles(sourcePath, Paths.get(pathFromCompileTo));
-                    if (!compiled) {
-                        logger.error("ERROR: Kompilierung fehlgeschlagen Programm wird beendet");
-                        System.exit(1);
-                    }
-                    logger.info("Kompilierung erfolgreich");
-                    effectiveUserCodePath = pathFromCompileTo; // Kompilierpfad nutzen
-                } else {
-                    logger.info("Lade von vorkompiliertem Verzeichnis: " + pathFrom);
-                    // Keine .java-Dateien gefunden wir nehmen an es ist ein Ordner mit .class-Dateien
-                    effectiveUserCodePath = pathFrom; // pathFrom direkt nutzen
-                }
-            } else {
-                logger.error("ERROR: --pathfrom ist kein gültiges Verzeichnis oder .jar-Archiv: " + pathFrom);
-                System.exit(1);
-                return;
-            }
+        if ("worker".equals(params.get("mode"))) {
+            System.exit(SandboxWorker.run(params.getOrDefault("config", SandboxJob.DEFAULT_CONFIG)));
+        }
 
-            // 1. Custom ClassLoader erstellen
-            BlockingClassLoader customLoader = new BlockingClassLoader(
-                    ClassLoader.getSystemClassLoader(),
-                    effectiveUserCodePath,
-                    pathFromConfig
-            );
+        if ("supervisor".equals(params.get("mode")) && !params.containsKey("help")) {
+            runSupervisor(params, logFile);
+            return;
+        }
 
-            // 2. Main-Klasse des Benutzers laden und ausführen
-            logger.info("\n--- Führe Benutzercode in Sandbox aus ---");
-            Class<?> userAppClass = customLoader.loadClass(mainClassName);
+        if ("server".equals(params.get("mode")) && !params.containsKey("help")) {
+            runServer(params, logFile);
+            return;
+        }
 
-            Method mainMethod = null;
-            try {
-                // Zuerst nach einer Standard 'public static void main(String[] args)' suchen
-                mainMethod = userAppClass.getMethod("main", String[].class);
-            } catch (NoSuchMethodException e) {
-                // Nicht gefunden dann probieren wir 'run()'
-            }
+        if (params.containsKey("help") || !params.containsKey("pathfrom") || !params.containsKey("main-class")) {
+            printUsage();
+            return;
+        }
 
-            if (mainMethod != null) {
-                // 'main(String[])' gefunden Aufruf
-                logger.info("Fand 'public static void main(String[] args)' Methode Rufe auf...");
-                // Die 'main' Methode ist static erster Parameter für invoke ist null
-                // Wir übergeben ein leeres String-Array
-                mainMethod.invoke(null, (Object) new String[0]);
-            } else {
-                // 'main' nicht gefunden suche nach 'public void run()'
-                logger.info("Keine 'main(String[])' Methode gefunden Suche nach 'public void run()'...");
-                Method runMethod = null;
-                try {
-                    runMethod = userAppClass.getMethod("run");
-                    // 'run()' gefunden Klasse instanziieren und aufrufen
-                    Object userAppInstance = userAppClass.getDeclaredConstructor().newInstance();
-                    runMethod.invoke(userAppInstance);
-                } catch (NoSuchMethodException runException) {
-                    // Keine der Methoden wurde gefunden Das ist der Fehler
-                    logger.error("ERROR: Main-Klasse '" + mainClassName + "' hat weder 'public static void main(String[] args)' noch 'public void run()' Methode", runException);
-                    throw runException; // Exception weiterwerfen
-                }
-            }
+        SandboxJob job = SandboxJob.fromParams(params);
 
+        logger.info("Starte Sandbox...");
+        logger.info("Security Config: {}", job.configPath());
+        logger.info("User Main Class: {}", job.mainClass());
+        logger.info("Log File: {}", logFile);
 
-        } catch (ClassNotFoundException e) {
-            logger.error("ERROR: Konnte Main-Klasse '" + mainClassName + "' in " + sourcePath + " nicht finden", e);
-            System.exit(1);
-        } catch (NoSuchMethodException e) {
-            // Fängt die Exception falls weder 'main' noch 'run' gefunden wurde
-            logger.error("Ausführung fehlgeschlagen: Konnte keinen passenden Einstiegspunkt finden", e);
-            System.exit(1);
-        } catch (Exception e) {
-            logger.error("Ein Fehler ist während der Ausführung der Benutzeranwendung aufgetreten", e);
+        boolean capture = "true".equals(params.get("capture"));
+        SandboxResult result = SandboxRunner.run(job, capture);
+        if (capture) {
+            System.out.print(result.stdout());
+            System.err.print(result.stderr());
         }
+        dumpMetrics(result, params.get("metrics"));
 
+        if (result.status().exitCode != 0) {
+            System.exit(result.status().exitCode);
+        }
         logger.info("Sandbox-Ausführung beendet");
     }
 
     /**
-     * Kompiliert alle .java-Dateien aus einem Quellverzeichnis in ein Ausgabeverzeichnis
+     * Startet den Server-Modus und kehrt erst zurück wenn der Server beendet wird
      */
-    private static boolean compileSourceFiles(Path sourceDir, Path outputDir) {
-        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-        if (compiler == null) {
-            logger.error("FEHLER: Keinen Java-Compiler gefunden Bitte mit einem JDK ausführen nicht nur JRE");
-            return false;
-        }
-
-        try (Stream<Path> stream = Files.walk(sourceDir)) {
-            List<String> javaFiles = stream
-                    .filter(file -> file.toString().endsWith(".java"))
-                    .map(Path::toString)
-                    .collect(Collectors.toList());
-
-            if (javaFiles.isEmpty()) {
-                logger.warn("WARNUNG: Keine .java-Dateien in " + sourceDir + " gefunden");
-                return true; // Kein Fehler nur nichts zu tun
-            }
-
-            // Sicherstellen dass das Ausgabeverzeichnis existiert
-            Files.createDirectories(outputDir);
-
-            String[] compilerArgs = {
-                    "-d", outputDir.toString()
-            };
-
-            // Compiler-Argumente und Dateiliste zusammenführen
-            Stream<String> argsStream = Stream.concat(Stream.of(compilerArgs), javaFiles.stream());
+    private static void runServer(Map<String, String> params, String logFile) {
+        int port = Integer.parseInt(params.getOrDefault("port", "7070"));
+        int threads = Integer.parseInt(params.getOrDefault("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        if (params.containsKey("pool")) {
+            LoaderPool.configure(Integer.parseInt(params.get("pool")),
+                    Long.parseLong(params.getOrDefault("pool-idle", String.valueOf(LoaderPool.DEFAULT_IDLE_MILLIS))));
+        }
+        configureLeakCheck(params);
+        try {
+            new SandboxServer(port, threads, logFile).serve();
+        } catch (IOException e) {
+            logger.error("ERROR: Sandbox-Server konnte nicht gestartet werden", e);
+            System.exit(1);
+        }
+    }
 
-            int compilationResult = compiler.run(null, null, null, argsStream.toArray(String[]::new));
-            return (compilationResult == 0);
+    /**
+     * Startet den Supervisor-Modus und kehrt erst zurück wenn der Server beendet wird
+     */
+    private static void runSupervisor(Map<String, String> params, String logFile) {
+        int port = Integer.parseInt(params.getOrDefault("port", "7070"));
+        int workers = Integer.parseInt(params.getOrDefault("workers",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int maxJobs = Integer.parseInt(params.getOrDefault("worker-jobs", String.valueOf(WorkerPool.DEFAULT_MAX_JOBS)));
+        Path archive = params.containsKey("cds-archive") ? Paths.get(params.get("cds-archive")) : null;
+        List<String> workerArgs = new ArrayList<>(List.of("log=" + logFile,
+                "config=" + params.getOrDefault("config", SandboxJob.DEFAULT_CONFIG)));
+        if (params.containsKey("cache")) {
+            workerArgs.add("cache=" + params.get("cache"));
+        }
+        try (WorkerPool pool = new WorkerPool(workers, maxJobs, archive, workerArgs)) {
+            // Ein Thread pro Worker wartet auf dessen Ergebnis
+            new SandboxServer(port, workers, logFile, pool).serve();
+        } catch (IOException e) {
+            logger.error("ERROR: Supervisor konnte nicht gestartet werden", e);
+            System.exit(1);
+        }
+    }
 
+    /**
+     * Startet den Batch-Modus und liefert den Exit-Code (1 wenn die Dateien nicht lesbar/schreibbar sind
+     * 2 wenn Ergebniszeilen fehlen)
+     */
+    private static int runBatch(Map<String, String> params, String logFile) {
+        int threads = Integer.parseInt(params.getOrDefault("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        SandboxBatch batch = new SandboxBatch(Paths.get(params.get("jobs")),
+                Paths.get(params.getOrDefault("results", "results.jsonl")),
+                threads, "true".equals(params.get("resume")), logFile);
+        configureLeakCheck(params);
+        try {
+            SandboxBatch.Summary summary = batch.run();
+            logger.info("Batch beendet: {}", summary);
+            if (LoaderLeakDetector.shared() != null) {
+                logger.info("Loader leak check: {}", LoaderLeakDetector.shared().stats());
+            }
+            if (summary.lost() > 0) {
+                logger.error("ERROR: Für {} Aufträge fehlt die Ergebniszeile", summary.lost());
+                return 2;
+            }
+            return 0;
         } catch (IOException e) {
-            logger.error("ERROR: Konnte Quelldateien nicht lesen", e);
-            return false;
+            logger.error("ERROR: Batch konnte nicht ausgeführt werden", e);
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
         }
     }
 
+    private static void configureLeakCheck(Map<String, String> params) {
+        LoaderLeakDetector.configure(Long.parseLong(params.getOrDefault("leak-check",
+                String.valueOf(LoaderLeakDetector.DEFAULT_GRACE_SECONDS))));
+    }
+
+    /**
+     * Schreibt Ergebnis, Verbrauch und Loader-Metriken als JSON ins Log und optional in eine Datei
+     */
+    private static void dumpMetrics(SandboxResult result, String metricsFile) {
+        JSONObject json = result.toJson();
+        json.remove("stdout");
+        json.remove("stderr");
+        logger.info("Metrics: {}", json);
+        if (metricsFile != null) {
+            try {
+                Files.writeString(Paths.get(metricsFile), json.toString(2), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                logger.warn("WARNUNG: Konnte Metriken nicht schreiben: {}", metricsFile, e);
+            }
+        }
+    }
 
     private static Map<String, String> parseArgs(String[] args) {
         Map<String, String> params = new HashMap<>();
@@ -217,12 +259,44 @@ public class Main {
         logger.info("Usage: java -jar cclsandbox.jar [options]");
         logger.info("Options:");
         logger.info("  --pathfrom=<path>     (Nötig) Pfad zum Quellverzeichnis (.java) oder einer .jar-Datei");
+        logger.info("                      oder Klassenpfad aus Verzeichnissen/JARs (getrennt mit '{}')", File.pathSeparator);
         logger.info("  --main-class=<class>  (Nötig) Vollständiger Klassenname zur Ausführung (zB com.example.UserApp)");
         logger.info("  --pathto=<path>       (Optional) Verzeichnis wohin .class-Dateien kompiliert werden");
-        logger.info("                      (Standard ist aktuelles Arbeitsverzeichnis: '.')");
+        logger.info("                      (Standard: im Speicher kompilieren ohne .class-Dateien)");
         logger.info("  --config=<path>       (Optional) Pfad zur config.json Sicherheitskonfigurationsdatei");
         logger.info("                      (Standard ist 'config.json')");
         logger.info("  --log=<path>          (Optional) Pfad zur Log-Datei");
         logger.info("                      (Standard ist 'cclsandbox.log')");
+        logger.info("  --prescan=true        (Optional) Klassen vor dem Start gegen die Blockliste prüfen");
+        logger.info("                      und bei Verstößen gar nicht erst ausführen");
+        logger.info("  --prefetch=true       (Optional) Von der Main-Klasse erreichbare Klassen im Hintergrund");
+        logger.info("                      parallel laden und verifizieren");
+        logger.info("  --cache=<dir>         (Optional) Verzeichnis für den Bytecode-Cache von JARs");
+        logger.info("                      (Standard: nur im Speicher)");
+        logger.info("  --metrics=<path>      (Optional) Verbrauch und Loader-Metriken des Laufs als JSON-Datei");
+        logger.info("  --asynclog=true       (Optional) Log asynchron schreiben, volle Queue verwirft Einträge");
+        logger.info("  --capture=true        (Optional) Ausgabe des Benutzercodes begrenzt puffern (limits.outputBytes)");
+        logger.info("                      und erst nach dem Lauf ausgeben");
+        logger.info("  --mode=server         (Optional) Server-Modus: Aufträge als JSON-Lines über 127.0.0.1");
+        logger.info("  --port=<port>         (Optional) Port für den Server-Modus (Standard ist 7070)");
+        logger.info("  --threads=<n>         (Optional) Parallele Aufträge im Server-Modus");
+        logger.info("                      (Standard ist die Anzahl der CPU-Kerne)");
+        logger.info("  --pool=<n>            (Optional) Server-Modus: n vorgewärmte ClassLoader pro JAR und Policy");
+        logger.info("  --pool-idle=<ms>      (Optional) Pool einer JAR nach so langer Pause verwerfen");
+        logger.info("                      (Standard ist 300000)");
+        logger.info("  --mode=batch          (Optional) Batch-Modus: Aufträge aus --jobs (JSON-Lines) parallel abarbeiten");
+        logger.info("  --jobs=<path>         (Nötig für batch) Datei mit einem Auftrag pro Zeile");
+        logger.info("  --results=<path>      (Optional) Ergebnisdatei, eine Zeile pro Auftrag (Standard ist 'results.jsonl')");
+        logger.info("  --resume=true         (Optional) Batch: Aufträge mit vorhandenem Ergebnis überspringen");
+        logger.info("  --leak-check=<s>      (Optional) Server/Batch: ClassLoader melden die s Sekunden nach");
+        logger.info("                      ihrem Lauf noch erreichbar sind (Standard ist 60, 0 = aus)");
+        logger.info("  --mode=supervisor     (Optional) Wie mode=server, jeder Auftrag läuft aber in einer");
+        logger.info("                      vorgestarteten Worker-JVM (Prozess-Isolation)");
+        logger.info("  --workers=<n>         (Optional) Anzahl Worker-JVMs (Standard ist die Anzahl der CPU-Kerne)");
+        logger.info("  --worker-jobs=<n>     (Optional) Worker nach n Aufträgen ersetzen (Standard ist 100)");
+        logger.info("                      --cds-archive=<path> startet die Worker mit dem CDS-Archiv");
+        logger.info("  --mode=cds            (Optional) Lauf in eigener JVM aufnehmen und ein CDS-Archiv bzw.");
+        logger.info("                      ab JDK 24 einen AOT-Cache für schnellere JVM-Starts schreiben");
+        logger.info("  --cds-archive=<path>  (Optional) Ziel des Archivs (Standard ist 'cclsandbox.jsa')");
     }
 }
@@ -0,0 +1,65 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Klassen die bereits im Speicher liegen (z.B. aus dem InMemoryCompiler)
+ *
+ * Die Byte-Arrays können zwischen Läufen geteilt sein und werden nie verändert
+ * Ressourcen kommen optional aus einer weiteren Quelle (z.B. dem Quellverzeichnis)
+ */
+final class MemoryClassSource implements ClassSource {
+
+    private final Map<String, byte[]> classes;
+    private final ClassSource resources;
+
+    MemoryClassSource(Map<String, byte[]> classes) {
+        this(classes, ClassSource.empty());
+    }
+
+    MemoryClassSource(Map<String, byte[]> classes, ClassSource resources) {
+        this.classes = Map.copyOf(classes);
+        this.resources = resources;
+    }
+
+    @Override
+    public boolean contains(String className) {
+        return classes.containsKey(className);
+    }
+
+    @Override
+    public Set<String> classNames() {
+        return classes.keySet();
+    }
+
+    @Override
+    public ByteBuffer read(String className) throws IOException {
+        byte[] bytes = classes.get(className);
+        if (bytes == null) {
+            throw new IOException("No such class: " + className);
+        }
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    @Override
+    public Set<String> resourceNames() {
+        return resources.resourceNames();
+    }
+
+    @Override
+    public long resourceSize(String name) throws IOException {
+        return resources.resourceSize(name);
+    }
+
+    @Override
+    public InputStream openResource(String name) throws IOException {
+        return resources.openResource(name);
+    }
+
+    @Override
+    public void close() throws IOException {
+        resources.close();
+    }
+}
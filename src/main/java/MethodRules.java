@@ -0,0 +1,139 @@
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Methoden-Regeln aus "blockedMethods" in der config.json
+ *
+ * Format pro Eintrag: voll qualifizierte Klasse + "." + Methodenname, z.B.
+ * "java.lang.Runtime.exec" (gilt für alle Überladungen) Konstruktoren und
+ * Klasseninitialisierer können so nicht blockiert werden dafür gibt es blockedClasses
+ *
+ * Immer blockiert sind die Methoden aus VIRTUAL_THREAD_RULES: virtuelle Threads gehören zu
+ * keiner ThreadGroup und ThreadMXBean liefert für sie weder CPU-Zeit noch Allokationen
+ * RunWatchdog könnte sie also weder messen noch abwarten
+ *
+ * Damit ist immer eine Methode blockiert also kommen auch die Lookup-Methoden aus LOOKUP_RULES
+ * dazu sonst ließe sich z.B. System.exit über MethodHandles.lookup().findStatic(...) erreichen
+ */
+final class MethodRules {
+
+    // Erhöhen wenn sich die eingebauten Regeln ändern Teil des Schlüssels gespeicherter Umschreibungen
+    static final int VERSION = 2;
+
+    // Starten virtuelle Threads (StructuredTaskScope ist ohne --enable-preview nicht nutzbar)
+    static final String[] VIRTUAL_THREAD_RULES = {
+            "java.lang.Thread.ofVirtual",
+            "java.lang.Thread.startVirtualThread",
+            "java.util.concurrent.Executors.newVirtualThreadPerTaskExecutor",
+    };
+
+    // Liefern Handles auf beliebige Methoden am umgeschriebenen Aufruf vorbei
+    static final String[] LOOKUP_RULES = {
+            "java.lang.invoke.MethodHandles$Lookup.findStatic",
+            "java.lang.invoke.MethodHandles$Lookup.findVirtual",
+            "java.lang.invoke.MethodHandles$Lookup.findSpecial",
+            "java.lang.invoke.MethodHandles$Lookup.unreflect",
+            "java.lang.invoke.MethodHandles$Lookup.unreflectSpecial",
+    };
+
+    // Nur die eingebauten Regeln (z.B. ohne lesbare config.json)
+    static final MethodRules DEFAULT = builder().build();
+
+    // Längste Oberklassenkette die matchingOwner abläuft
+    private static final int MAX_SUPERCLASS_DEPTH = 64;
+
+    // Interner Klassenname (java/lang/Runtime) -> Methodennamen
+    private final Map<String, Set<String>> byOwner;
+    // Alle blockierten Methodennamen egal welcher Besitzer
+    private final Set<String> names;
+    private final int size;
+
+    private MethodRules(Map<String, Set<String>> byOwner, int size) {
+        this.byOwner = byOwner;
+        Set<String> all = new HashSet<>();
+        byOwner.values().forEach(all::addAll);
+        this.names = Set.copyOf(all);
+        this.size = size;
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    static final class Builder {
+
+        private final Map<String, Set<String>> byOwner = new HashMap<>();
+        private int size;
+
+        private Builder() {
+        }
+
+        /**
+         * Ungültige Einträge werfen IllegalArgumentException
+         */
+        Builder block(String rule) {
+            int dot = rule.lastIndexOf('.');
+            if (dot <= 0 || dot == rule.length() - 1) {
+                throw new IllegalArgumentException("Expected 'package.Class.method': " + rule);
+            }
+            String method = rule.substring(dot + 1);
+            if (method.startsWith("<")) {
+                throw new IllegalArgumentException("Constructors cannot be blocked per method: " + rule);
+            }
+            if (byOwner.computeIfAbsent(rule.substring(0, dot).replace('.', '/'), k -> new HashSet<>()).add(method)) {
+                size++;
+            }
+            return this;
+        }
+
+        MethodRules build() {
+            for (String rule : VIRTUAL_THREAD_RULES) {
+                block(rule);
+            }
+            for (String rule : LOOKUP_RULES) {
+                block(rule);
+            }
+            Map<String, Set<String>> frozen = new HashMap<>();
+            byOwner.forEach((owner, methods) -> frozen.put(owner, Set.copyOf(methods)));
+            return new MethodRules(Map.copyOf(frozen), size);
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean matches(String internalOwner, String methodName) {
+        Set<String> methods = byOwner.get(internalOwner);
+        return methods != null && methods.contains(methodName);
+    }
+
+    /**
+     * Besitzer der Regel die einen Aufruf owner.name trifft oder null
+     *
+     * Die Referenz im Konstantenpool nennt die Klasse über die aufgerufen wird Das kann eine
+     * Unterklasse des gesperrten Besitzers sein (X.ofVirtual() mit X extends Thread oder
+     * ForkJoinWorkerThread.ofVirtual()) darum wird die Oberklassenkette über superclassOf
+     * abgelaufen Nur für blockierte Methodennamen die übrigen Aufrufe kosten einen Lookup
+     */
+    String matchingOwner(String internalOwner, String methodName, UnaryOperator<String> superclassOf) {
+        if (!names.contains(methodName)) {
+            return null;
+        }
+        String owner = internalOwner;
+        for (int depth = 0; owner != null && depth < MAX_SUPERCLASS_DEPTH; depth++) {
+            if (matches(owner, methodName)) {
+                return owner;
+            }
+            owner = superclassOf.apply(owner);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,286 @@
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Leitet System.out/System.err pro Sandbox-Lauf in eigene begrenzte Puffer um
+ *
+ * System.out/err werden einmalig durch einen Demultiplexer ersetzt Der reicht jeden
+ * Aufruf an den PrintStream des Laufs weiter der am aktuellen Thread hängt
+ * (InheritableThreadLocal damit auch Threads des Benutzercodes erfasst werden) und
+ * sonst an die ursprünglichen Streams Log4j schreibt weiter direkt auf die Original-Konsole
+ * Gemeinsame Hilfs-Threads (Watchdog, Flusher, Pools) werden oft erst während eines Laufs
+ * gestartet und erben die Aufzeichnung deshalb nicht (inheritInheritableThreadLocals(false))
+ * sonst hielten sie den Puffer eines längst beendeten Laufs fest
+ *
+ * Jeder Lauf hat eigene PrintStreams über einem RingBufferOutputStream Parallele Läufe
+ * teilen sich also kein Lock und ein Lauf der die Konsole flutet kostet höchstens
+ * maxBytes Speicher pro Stream der Rest wird gezählt und markiert
+ */
+final class OutputCapture implements AutoCloseable {
+
+    private static final InheritableThreadLocal<OutputCapture> CURRENT = new InheritableThreadLocal<>();
+    private static PrintStream originalOut;
+    private static PrintStream originalErr;
+
+    private final RingBufferOutputStream outBuffer;
+    private final RingBufferOutputStream errBuffer;
+    private final PrintStream out;
+    private final PrintStream err;
+
+    private OutputCapture(int maxBytes) {
+        this.outBuffer = new RingBufferOutputStream(maxBytes);
+        this.errBuffer = new RingBufferOutputStream(maxBytes);
+        this.out = new PrintStream(outBuffer, true, StandardCharsets.UTF_8);
+        this.err = new PrintStream(errBuffer, true, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Ersetzt System.out/err durch die Demultiplexer Mehrfacher Aufruf ist harmlos
+     */
+    static synchronized void install() {
+        if (originalOut != null) {
+            return;
+        }
+        originalOut = System.out;
+        originalErr = System.err;
+        System.setOut(new Demux(originalOut, false));
+        System.setErr(new Demux(originalErr, true));
+    }
+
+    /**
+     * Startet die Aufzeichnung für den aktuellen Thread und alle Threads die er erzeugt
+     * maxBytes begrenzt stdout und stderr jeweils für sich
+     */
+    static OutputCapture begin(int maxBytes) {
+        install();
+        OutputCapture capture = new OutputCapture(maxBytes);
+        CURRENT.set(capture);
+        return capture;
+    }
+
+    String stdout() {
+        return outBuffer.toString(StandardCharsets.UTF_8);
+    }
+
+    String stderr() {
+        return errBuffer.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Verworfene Bytes von stdout und stderr zusammen
+     */
+    long truncated() {
+        return outBuffer.truncated() + errBuffer.truncated();
+    }
+
+    /**
+     * Beendet die Aufzeichnung für den aktuellen Thread
+     */
+    @Override
+    public void close() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Ersatz für System.out/err der jeden Aufruf an den Stream des aktuellen Laufs gibt
+     * Hält selbst kein Lock (PrintStream würde sonst alle Läufe über ein Lock serialisieren)
+     */
+    private static final class Demux extends PrintStream {
+
+        private final PrintStream fallback;
+        private final boolean stderr;
+
+        private Demux(PrintStream fallback, boolean stderr) {
+            super(fallback, true, fallback.charset());
+            this.fallback = fallback;
+            this.stderr = stderr;
+        }
+
+        private PrintStream target() {
+            OutputCapture capture = CURRENT.get();
+            if (capture == null) {
+                return fallback;
+            }
+            return stderr ? capture.err : capture.out;
+        }
+
+        @Override
+        public void flush() {
+            target().flush();
+        }
+
+        @Override
+        public void close() {
+            // System.out/err werden nie geschlossen
+        }
+
+        @Override
+        public boolean checkError() {
+            return target().checkError();
+        }
+
+        @Override
+        public void write(int b) {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] buf, int off, int len) {
+            target().write(buf, off, len);
+        }
+
+        @Override
+        public void write(byte[] buf) {
+            target().write(buf, 0, buf.length);
+        }
+
+        @Override
+        public void writeBytes(byte[] buf) {
+            target().write(buf, 0, buf.length);
+        }
+
+        @Override
+        public void print(boolean b) {
+            target().print(b);
+        }
+
+        @Override
+        public void print(char c) {
+            target().print(c);
+        }
+
+        @Override
+        public void print(int i) {
+            target().print(i);
+        }
+
+        @Override
+        public void print(long l) {
+            target().print(l);
+        }
+
+        @Override
+        public void print(float f) {
+            target().print(f);
+        }
+
+        @Override
+        public void print(double d) {
+            target().print(d);
+        }
+
+        @Override
+        public void print(char[] s) {
+            target().print(s);
+        }
+
+        @Override
+        public void print(String s) {
+            target().print(s);
+        }
+
+        @Override
+        public void print(Object obj) {
+            target().print(obj);
+        }
+
+        @Override
+        public void println() {
+            target().println();
+        }
+
+        @Override
+        public void println(boolean x) {
+            target().println(x);
+        }
+
+        @Override
+        public void println(char x) {
+            target().println(x);
+        }
+
+        @Override
+        public void println(int x) {
+            target().println(x);
+        }
+
+        @Override
+        public void println(long x) {
+            target().println(x);
+        }
+
+        @Override
+        public void println(float x) {
+            target().println(x);
+        }
+
+        @Override
+        public void println(double x) {
+            target().println(x);
+        }
+
+        @Override
+        public void println(char[] x) {
+            target().println(x);
+        }
+
+        @Override
+        public void println(String x) {
+            target().println(x);
+        }
+
+        @Override
+        public void println(Object x) {
+            target().println(x);
+        }
+
+        @Override
+        public PrintStream printf(String format, Object... args) {
+            target().printf(format, args);
+            return this;
+        }
+
+        @Override
+        public PrintStream printf(Locale l, String format, Object... args) {
+            target().printf(l, format, args);
+            return this;
+        }
+
+        @Override
+        public PrintStream format(String format, Object... args) {
+            target().format(format, args);
+            return this;
+        }
+
+        @Override
+        public PrintStream format(Locale l, String format, Object... args) {
+            target().format(l, format, args);
+            return this;
+        }
+
+        @Override
+        public PrintStream append(CharSequence csq) {
+            target().append(csq);
+            return this;
+        }
+
+        @Override
+        public PrintStream append(CharSequence csq, int start, int end) {
+            target().append(csq, start, end);
+            return this;
+        }
+
+        @Override
+        public PrintStream append(char c) {
+            target().append(c);
+            return this;
+        }
+
+        @Override
+        public Charset charset() {
+            return target().charset();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Kompilierter unveränderlicher Matcher für die Sicherheitsregeln
+ *
+ * Die Regeln werden einmalig in einen Trie über die Segmente des Klassennamens
+ * übersetzt Eine Prüfung läuft danach in O(Länge des Namens) und legt keine
+ * neuen Objekte an (kein "pkg + '.'" pro Regel wie früher)
+ *
+ * Unterstützte Muster (nur ganze Segmente):
+ *  - java.io.File       exakter Name
+ *  - java.net.*         '*' passt auf genau ein Segment
+ *  - **.internal.*      '**' passt auf beliebig viele Segmente (auch keines)
+ *
+ * Paket-Regeln gelten für alle Klassen unterhalb des Pakets (wie bisher startsWith(pkg + "."))
+ * Allow-Regeln haben immer Vorrang vor Block-Regeln und erlauben so Ausnahmen
+ * innerhalb blockierter Pakete
+ */
+public final class PolicyMatcher implements Predicate<String> {
+
+    private static final int BLOCK = 1;
+    private static final int ALLOW = 2;
+
+    /** Matcher ohne Regeln blockiert nichts */
+    public static final PolicyMatcher EMPTY = new Builder().build();
+
+    private final Node root;
+    private final int ruleCount;
+
+    private PolicyMatcher(Node root, int ruleCount) {
+        this.root = root;
+        this.ruleCount = ruleCount;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Prüft ob eine Klasse durch die Regeln blockiert ist
+     */
+    public boolean isBlocked(String className) {
+        int mask = match(root, className, 0);
+        return (mask & ALLOW) == 0 && (mask & BLOCK) != 0;
+    }
+
+    @Override
+    public boolean test(String className) {
+        return isBlocked(className);
+    }
+
+    public int ruleCount() {
+        return ruleCount;
+    }
+
+    /**
+     * Läuft rekursiv durch den Trie 'start' zeigt auf den Anfang des nächsten Segments
+     * ist start > name.length() ist der Name vollständig verbraucht
+     */
+    private static int match(Node node, String name, int start) {
+        int len = name.length();
+        if (start > len) {
+            int mask = node.exactMask;
+            if (node.deep != null) {
+                // '**' darf auch auf null Segmente passen
+                mask |= match(node.deep, name, start);
+            }
+            return mask;
+        }
+
+        int end = name.indexOf('.', start);
+        if (end < 0) {
+            end = len;
+        }
+
+        // Mindestens ein Segment folgt noch also greifen Paket-Regeln
+        int mask = node.subtreeMask;
+
+        Node child = node.child(name, start, end);
+        if (child != null) {
+            mask |= match(child, name, end + 1);
+            if ((mask & ALLOW) != 0) {
+                return mask;
+            }
+        }
+
+        if (node.any != null) {
+            mask |= match(node.any, name, end + 1);
+            if ((mask & ALLOW) != 0) {
+                return mask;
+            }
+        }
+
+        if (node.deep != null) {
+            for (int s = start; ; ) {
+                mask |= match(node.deep, name, s);
+                if ((mask & ALLOW) != 0 || s > len) {
+                    return mask;
+                }
+                int e = name.indexOf('.', s);
+                s = e < 0 ? len + 1 : e + 1;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Baut den Trie auf Ist nicht thread-safe und wird nach build() nicht mehr gebraucht
+     */
+    public static final class Builder {
+
+        private final Node root = new Node();
+        private int ruleCount;
+
+        private Builder() {
+        }
+
+        public Builder blockClass(String pattern) {
+            insert(pattern, BLOCK, false);
+            return this;
+        }
+
+        public Builder blockPackage(String pattern) {
+            insert(pattern, BLOCK, true);
+            return this;
+        }
+
+        public Builder allowClass(String pattern) {
+            insert(pattern, ALLOW, false);
+            return this;
+        }
+
+        public Builder allowPackage(String pattern) {
+            insert(pattern, ALLOW, true);
+            return this;
+        }
+
+        public PolicyMatcher build() {
+            root.freeze();
+            return new PolicyMatcher(root, ruleCount);
+        }
+
+        private void insert(String pattern, int decision, boolean packageRule) {
+            if (pattern == null || pattern.isBlank()) {
+                throw new IllegalArgumentException("Empty rule");
+            }
+            Node node = root;
+            for (String segment : splitSegments(pattern.trim())) {
+                if (segment.isEmpty()) {
+                    throw new IllegalArgumentException("Empty segment in rule: " + pattern);
+                }
+                if (segment.equals("**")) {
+                    if (node.deep == null) {
+                        node.deep = new Node();
+                    }
+                    node = node.deep;
+                } else if (segment.equals("*")) {
+                    if (node.any == null) {
+                        node.any = new Node();
+                    }
+                    node = node.any;
+                } else if (segment.indexOf('*') >= 0) {
+                    throw new IllegalArgumentException("Wildcards must span a whole segment: " + pattern);
+                } else {
+                    node = node.building.computeIfAbsent(segment, k -> new Node());
+                }
+            }
+            if (packageRule) {
+                node.subtreeMask |= decision;
+            } else {
+                node.exactMask |= decision;
+            }
+            ruleCount++;
+        }
+
+        private static List<String> splitSegments(String pattern) {
+            List<String> segments = new ArrayList<>();
+            int start = 0;
+            int dot;
+            while ((dot = pattern.indexOf('.', start)) >= 0) {
+                segments.add(pattern.substring(start, dot));
+                start = dot + 1;
+            }
+            segments.add(pattern.substring(start));
+            return segments;
+        }
+    }
+
+    /**
+     * Ein Knoten im Trie Kinder werden nach dem Aufbau in eine offene Hashtabelle
+     * umgewandelt damit die Suche direkt auf einem Teilbereich des Namens arbeitet
+     */
+    private static final class Node {
+
+        private Map<String, Node> building = new HashMap<>();
+        private String[] keys;
+        private Node[] children;
+        private int tableMask;
+
+        private Node any;
+        private Node deep;
+        private int exactMask;
+        private int subtreeMask;
+
+        private void freeze() {
+            if (!building.isEmpty()) {
+                int size = Integer.highestOneBit(Math.max(2, building.size() * 2 - 1)) << 1;
+                keys = new String[size];
+                children = new Node[size];
+                tableMask = size - 1;
+                for (Map.Entry<String, Node> entry : building.entrySet()) {
+                    int i = spread(entry.getKey().hashCode()) & tableMask;
+                    while (keys[i] != null) {
+                        i = (i + 1) & tableMask;
+                    }
+                    keys[i] = entry.getKey();
+                    children[i] = entry.getValue();
+                    entry.getValue().freeze();
+                }
+            }
+            building = null;
+            if (any != null) {
+                any.freeze();
+            }
+            if (deep != null) {
+                deep.freeze();
+            }
+        }
+
+        private Node child(String name, int start, int end) {
+            if (keys == null) {
+                return null;
+            }
+            // Gleiche Formel wie String.hashCode() aber ohne substring()
+            int h = 0;
+            for (int i = start; i < end; i++) {
+                h = 31 * h + name.charAt(i);
+            }
+            int len = end - start;
+            for (int i = spread(h) & tableMask; ; i = (i + 1) & tableMask) {
+                String key = keys[i];
+                if (key == null) {
+                    return null;
+                }
+                if (key.length() == len && key.regionMatches(0, name, start, len)) {
+                    return children[i];
+                }
+            }
+        }
+
+        private static int spread(int h) {
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Prozessweiter Cache für geparste Sicherheitskonfigurationen
+ *
+ * Alle ClassLoader mit derselben config.json teilen sich ein SecurityPolicy-Objekt
+ * Die Einträge werden per Referenzzähler verwaltet: acquire() beim Erstellen eines
+ * Loaders, Handle.close() beim Schließen Ändert sich die Datei (WatchService oder
+ * mtime/Größe beim nächsten acquire) wird sie neu geparst und die neue Version per
+ * volatile-Schreibzugriff veröffentlicht Laufende Loader sehen sie beim nächsten
+ * current() ohne Lock
+ */
+final class PolicyRegistry {
+
+    private static final Logger logger = LogManager.getLogger(PolicyRegistry.class);
+
+    private static final PolicyRegistry SHARED = new PolicyRegistry();
+
+    private final ConcurrentHashMap<Path, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Path, WatchKey> watchedDirs = new HashMap<>();
+    private WatchService watchService;
+
+    static PolicyRegistry shared() {
+        return SHARED;
+    }
+
+    /**
+     * Ein geteilter Verweis auf die jeweils aktuelle Version einer Konfiguration
+     */
+    final class Handle implements AutoCloseable {
+
+        private final Entry entry;
+        private boolean closed;
+
+        private Handle(Entry entry) {
+            this.entry = entry;
+        }
+
+        SecurityPolicy current() {
+            return entry.policy;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                release(entry);
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final Path path;
+        private volatile SecurityPolicy policy = SecurityPolicy.EMPTY;
+        private FileTime modified;
+        private long size;
+        private boolean missing;
+        private int refs;
+
+        private Entry(Path path) {
+            this.path = path;
+        }
+    }
+
+    Handle acquire(String configPath) {
+        Path path = Paths.get(configPath).toAbsolutePath().normalize();
+        Entry entry = entries.compute(path, (key, existing) -> {
+            Entry e = existing != null ? existing : new Entry(key);
+            e.refs++;
+            return e;
+        });
+        // Neu angelegt oder Datei seit dem letzten Laden verändert
+        refreshIfChanged(entry, false);
+        watch(path.getParent());
+        return new Handle(entry);
+    }
+
+    /**
+     * Anzahl der aktuell geteilten Konfigurationen
+     */
+    int size() {
+        return entries.size();
+    }
+
+    private void release(Entry entry) {
+        entries.computeIfPresent(entry.path, (key, e) -> --e.refs > 0 ? e : null);
+    }
+
+    /**
+     * Prüft mtime und Größe und parst die Datei nur wenn sie sich geändert hat
+     * Mit force wird immer der Inhalt verglichen (mtime hat nicht überall ms-Auflösung)
+     */
+    private void refreshIfChanged(Entry entry, boolean force) {
+        synchronized (entry) {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(entry.path, BasicFileAttributes.class);
+            } catch (IOException e) {
+                if (!entry.missing) {
+                    entry.missing = true;
+                    entry.modified = null;
+                    // Wie beim Parse-Fehler gilt die letzte gültige Version weiter
+                    if (entry.policy == SecurityPolicy.EMPTY) {
+                        logger.warn("WARNING: Could not load config file '" + entry.path + "'. No classes will be blocked.", e);
+                    } else {
+                        logger.warn("WARNING: Could not read config file '" + entry.path + "'. Keeping previous version.", e);
+                    }
+                }
+                return;
+            }
+            entry.missing = false;
+            if (!force && attributes.lastModifiedTime().equals(entry.modified) && attributes.size() == entry.size) {
+                return;
+            }
+            entry.modified = attributes.lastModifiedTime();
+            entry.size = attributes.size();
+            reload(entry);
+        }
+    }
+
+    private void reload(Entry entry) {
+        try {
+            byte[] content = Files.readAllBytes(entry.path);
+            if (SecurityPolicy.hash(content).equals(entry.policy.contentHash())) {
+                return; // nur angefasst nicht verändert
+            }
+            boolean initial = entry.policy == SecurityPolicy.EMPTY;
+            entry.policy = SecurityPolicy.parse(content, entry.path.toString());
+            if (!initial) {
+                logger.info("Reloaded security policy " + entry.path);
+            }
+        } catch (Exception e) {
+            if (entry.policy == SecurityPolicy.EMPTY) {
+                logger.warn("WARNING: Could not load config file '" + entry.path + "'. No classes will be blocked.", e);
+            } else {
+                logger.warn("WARNING: Could not reload config file '" + entry.path + "'. Keeping previous version.", e);
+            }
+        }
+    }
+
+    /**
+     * Registriert das Verzeichnis beim WatchService Der Watcher-Thread wird beim ersten Aufruf gestartet
+     */
+    private synchronized void watch(Path dir) {
+        if (dir == null || watchedDirs.containsKey(dir) || !Files.isDirectory(dir)) {
+            return;
+        }
+        try {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                Thread.ofPlatform().name("policy-watcher").daemon().inheritInheritableThreadLocals(false)
+                        .start(this::watchLoop);
+            }
+            watchedDirs.put(dir, dir.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+        } catch (IOException e) {
+            logger.warn("Could not watch " + dir + " for policy changes: " + e.getMessage());
+        }
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path dir = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() instanceof Path name) {
+                        Entry entry = entries.get(dir.resolve(name));
+                        if (entry != null) {
+                            refreshIfChanged(entry, true);
+                        }
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Watcher wird mit der JVM beendet
+        }
+    }
+}
@@ -0,0 +1,141 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Statische Vorabprüfung aller Benutzerklassen gegen die Blockliste
+ *
+ * Statt erst zur Laufzeit beim loadClass abzubrechen werden vor dem Start die
+ * Konstantenpools aller Klassen parallel gelesen (ConstantPoolScanner) und jede
+ * referenzierte Klasse gegen die Policy geprüft Alle Verstöße werden gesammelt
+ * gemeldet
+ *
+ * Für Archive aus dem BytecodeCache werden die Ergebnisse pro (Klassen-Hash, Policy-Hash)
+ * gespeichert bekannte Klassen müssen dann gar nicht mehr gelesen werden
+ */
+final class PreScan {
+
+    private static final Logger logger = LogManager.getLogger(PreScan.class);
+
+    /**
+     * violations: Benutzerklasse -> blockierte Klassen die sie referenziert (sortiert)
+     * unreadable: Benutzerklassen die nicht gelesen oder geparst werden konnten (sortiert)
+     */
+    record Report(Map<String, List<String>> violations, List<String> unreadable, ClassScanner.ScanStats stats,
+                  int cachedVerdicts) {
+
+        /**
+         * Nicht prüfbare Klassen zählen wie Verstöße sonst käme manipulierter Bytecode ungeprüft durch
+         */
+        boolean clean() {
+            return violations.isEmpty() && unreadable.isEmpty() && stats.failures() == 0;
+        }
+
+        int violationCount() {
+            return violations.values().stream().mapToInt(List::size).sum();
+        }
+
+        /**
+         * Eine Zeile pro Benutzerklasse z.B. "App -> java.io.File, java.net.Socket"
+         */
+        String describe() {
+            StringBuilder sb = new StringBuilder();
+            violations.forEach((userClass, blocked) ->
+                    sb.append(userClass).append(" -> ").append(String.join(", ", blocked)).append('\n'));
+            for (String userClass : unreadable) {
+                sb.append(userClass).append(" -> could not be read or parsed\n");
+            }
+            return sb.toString();
+        }
+    }
+
+    private PreScan() {
+    }
+
+    static Report scan(ClassSource source, SecurityPolicy policy) {
+        BytecodeCache cache = BytecodeCache.shared();
+        Map<String, List<String>> violations = new ConcurrentHashMap<>();
+
+        // Bereits bekannte Ergebnisse übernehmen ohne die Klasse zu lesen (nur Klassen aus dem Cache haben einen Hash)
+        int cachedVerdicts = 0;
+        Set<String> remaining = new TreeSet<>();
+        for (String className : source.classNames()) {
+            String classHash = source.classHash(className);
+            String verdict = classHash != null ? cache.verdict(classHash, policy.contentHash()) : null;
+            if (verdict == null) {
+                remaining.add(className);
+            } else {
+                cachedVerdicts++;
+                if (!verdict.isEmpty()) {
+                    violations.put(className, List.of(verdict.split(",")));
+                }
+            }
+        }
+        ClassSource toScan = cachedVerdicts > 0 ? new FilteredSource(source, remaining) : source;
+        Set<String> scanned = ConcurrentHashMap.newKeySet();
+
+        ClassScanner.ScanStats stats = ClassScanner.scan(toScan, (className, classBytes) -> {
+            List<String> blocked = new ArrayList<>();
+            for (String referenced : ConstantPoolScanner.referencedClasses(classBytes)) {
+                if (policy.isBlocked(referenced)) {
+                    blocked.add(referenced);
+                }
+            }
+            Collections.sort(blocked);
+            if (!blocked.isEmpty()) {
+                violations.put(className, List.copyOf(blocked));
+            }
+            String classHash = source.classHash(className);
+            if (classHash != null) {
+                cache.putVerdict(classHash, policy.contentHash(), String.join(",", blocked));
+            }
+            scanned.add(className);
+        });
+
+        // Lese- und Parse-Fehler zählt ClassScanner nur hier werden die Namen gebraucht
+        List<String> unreadable = new ArrayList<>();
+        for (String className : toScan.classNames()) {
+            if (!scanned.contains(className)) {
+                unreadable.add(className);
+            }
+        }
+        Collections.sort(unreadable);
+        Report report = new Report(Collections.unmodifiableMap(new TreeMap<>(violations)), List.copyOf(unreadable),
+                stats, cachedVerdicts);
+        logger.info("Pre-scan: " + report.violationCount() + " blocked references in "
+                + report.violations().size() + " classes, " + unreadable.size() + " unreadable ("
+                + stats + ", " + cachedVerdicts + " cached)");
+        return report;
+    }
+
+    /**
+     * Sicht auf eine Quelle die nur einen Teil der Klassen enthält
+     */
+    private record FilteredSource(ClassSource delegate, Set<String> classNames) implements ClassSource {
+
+        @Override
+        public boolean contains(String className) {
+            return classNames.contains(className);
+        }
+
+        @Override
+        public ByteBuffer read(String className) throws IOException {
+            return delegate.read(className);
+        }
+
+        @Override
+        public void close() {
+            // gehört dem Aufrufer
+        }
+    }
+}
@@ -0,0 +1,80 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Regeln für getResource & Co. aus "resources" in der config.json
+ *
+ *   "resources": {"maxBytes": 16777216, "allowedExtensions": ["properties", "json"], "allowHostResources": false}
+ *
+ * maxBytes 0 bzw. fehlend = unbegrenzt allowedExtensions leer bzw. fehlend = alle Endungen
+ * Service-Dateien unter META-INF/services/ haben keine echte Endung und sind immer erlaubt
+ * allowHostResources entscheidet ob Ressourcen des Host-Klassenpfads (Parent) sichtbar sind
+ * Ohne "resources" gilt wie bisher: alles erlaubt auch Host-Ressourcen
+ */
+record ResourcePolicy(long maxBytes, Set<String> allowedExtensions, boolean allowHostResources) {
+
+    private static final Logger logger = LogManager.getLogger(ResourcePolicy.class);
+
+    private static final String SERVICES = "META-INF/services/";
+
+    static final ResourcePolicy DEFAULT = new ResourcePolicy(0, Set.of(), true);
+
+    ResourcePolicy {
+        allowedExtensions = Set.copyOf(allowedExtensions);
+    }
+
+    static ResourcePolicy fromJson(JSONObject config) {
+        JSONObject resources = config.optJSONObject("resources");
+        if (resources == null) {
+            return DEFAULT;
+        }
+        long maxBytes = resources.optLong("maxBytes", 0);
+        if (maxBytes < 0) {
+            logger.warn("WARNING: Ignoring invalid resource limit 'maxBytes': " + resources.opt("maxBytes"));
+            maxBytes = 0;
+        }
+        Set<String> extensions = new HashSet<>();
+        JSONArray allowed = resources.optJSONArray("allowedExtensions");
+        if (allowed != null) {
+            for (int i = 0; i < allowed.length(); i++) {
+                String extension = allowed.getString(i).toLowerCase(Locale.ROOT);
+                extensions.add(extension.startsWith(".") ? extension.substring(1) : extension);
+            }
+        }
+        return new ResourcePolicy(maxBytes, extensions, resources.optBoolean("allowHostResources", true));
+    }
+
+    /**
+     * Grund warum eine Benutzer-Ressource dieser Größe nicht ausgeliefert wird oder null
+     * size -1 = unbekannt die Grenze wird dann beim Lesen geprüft
+     */
+    String denies(String name, long size) {
+        if (!allowedExtensions.isEmpty() && !name.startsWith(SERVICES)
+                && !allowedExtensions.contains(extension(name))) {
+            return "extension not allowed";
+        }
+        if (maxBytes > 0 && size > maxBytes) {
+            return size + " bytes exceeds limit of " + maxBytes + " bytes";
+        }
+        return null;
+    }
+
+    private static String extension(String name) {
+        int slash = name.lastIndexOf('/');
+        int dot = name.lastIndexOf('.');
+        return dot > slash ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    @Override
+    public String toString() {
+        return "maxBytes=" + (maxBytes == 0 ? "-" : maxBytes)
+                + " extensions=" + (allowedExtensions.isEmpty() ? "*" : String.join(",", allowedExtensions))
+                + " host=" + allowHostResources;
+    }
+}
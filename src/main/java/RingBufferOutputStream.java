@@ -0,0 +1,109 @@
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Begrenzter Ausgabepuffer ohne Locks für die Ausgabe eines Sandbox-Laufs
+ *
+ * Behalten werden die ersten maxBytes/2 Bytes (head) und die letzten maxBytes/2 Bytes
+ * in einem Ring (tail) Alles dazwischen wird nur gezählt und beim Auslesen durch eine
+ * Markierung ersetzt: "[... 123456 bytes truncated ...]" Der Speicher ist also nie
+ * größer als maxBytes egal wie viel der Benutzercode schreibt
+ *
+ * Jeder write reserviert seinen Bereich mit einem getAndAdd und kopiert dann ohne Lock
+ * Schreiben mehrere Threads gleichzeitig und läuft der Ring dabei über kann der tail
+ * Bruchstücke verschiedener Threads enthalten die Länge stimmt trotzdem
+ */
+final class RingBufferOutputStream extends OutputStream {
+
+    private final byte[] head;
+    private final byte[] tail;
+    private final AtomicLong written = new AtomicLong();
+
+    RingBufferOutputStream(int maxBytes) {
+        if (maxBytes < 2) {
+            throw new IllegalArgumentException("Output buffer needs at least 2 bytes: " + maxBytes);
+        }
+        this.head = new byte[maxBytes / 2];
+        this.tail = new byte[maxBytes - head.length];
+    }
+
+    @Override
+    public void write(int b) {
+        long position = written.getAndIncrement();
+        if (position < head.length) {
+            head[(int) position] = (byte) b;
+        } else {
+            tail[(int) ((position - head.length) % tail.length)] = (byte) b;
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (len == 0) {
+            return;
+        }
+        long position = written.getAndAdd(len);
+        if (position < head.length) {
+            int n = (int) Math.min(len, head.length - position);
+            System.arraycopy(b, off, head, (int) position, n);
+            position += n;
+            off += n;
+            len -= n;
+        }
+        if (len > tail.length) {
+            // Vom Rest passen nur die letzten tail.length Bytes in den Ring
+            int skip = len - tail.length;
+            position += skip;
+            off += skip;
+            len = tail.length;
+        }
+        while (len > 0) {
+            int index = (int) ((position - head.length) % tail.length);
+            int n = Math.min(len, tail.length - index);
+            System.arraycopy(b, off, tail, index, n);
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Insgesamt geschriebene Bytes inklusive der verworfenen
+     */
+    long written() {
+        return written.get();
+    }
+
+    /**
+     * Verworfene Bytes (0 solange alles in head und tail passt)
+     */
+    long truncated() {
+        return Math.max(0, written.get() - head.length - tail.length);
+    }
+
+    /**
+     * Inhalt als Text bei Überlauf mit Markierung zwischen Anfang und Ende
+     */
+    String toString(Charset charset) {
+        long total = written.get();
+        if (total <= head.length) {
+            return new String(head, 0, (int) total, charset);
+        }
+        long inTail = total - head.length;
+        if (inTail <= tail.length) {
+            byte[] bytes = new byte[(int) total];
+            System.arraycopy(head, 0, bytes, 0, head.length);
+            System.arraycopy(tail, 0, bytes, head.length, (int) inTail);
+            return new String(bytes, charset);
+        }
+        // Ring ist übergelaufen die ältesten Bytes stehen an der nächsten Schreibposition
+        byte[] last = new byte[tail.length];
+        int start = (int) (inTail % tail.length);
+        System.arraycopy(tail, start, last, 0, tail.length - start);
+        System.arraycopy(tail, 0, last, tail.length - start, start);
+        return new String(head, charset)
+                + "\n[... " + (inTail - tail.length) + " bytes truncated ...]\n"
+                + new String(last, charset);
+    }
+}
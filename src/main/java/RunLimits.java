@@ -0,0 +1,133 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
+
+/**
+ * Budgets eines Sandbox-Laufs aus "limits" in der config.json
+ *
+ *   "limits": {"wallTimeMs": 60000, "cpuTimeMs": 30000, "allocatedBytes": 1073741824, "graceMs": 1000,
+ *              "outputBytes": 1048576}
+ *
+ * 0 bzw. fehlend = unbegrenzt CPU-Zeit und Allokationen zählen über alle Threads
+ * des Laufs graceMs ist die Zeit zwischen Interrupt und Aufgeben des Laufs
+ *
+ * outputBytes ist kein Abbruchgrund sondern die Puffergröße für stdout und stderr eines
+ * Laufs mit aufgezeichneter Ausgabe (siehe OutputCapture) Mehr wird gekürzt Die Ausgabe
+ * ist immer begrenzt 0 bzw. fehlend = DEFAULT_OUTPUT_BYTES
+ */
+record RunLimits(long wallMillis, long cpuMillis, long allocatedBytes, long graceMillis, int outputBytes) {
+
+    private static final Logger logger = LogManager.getLogger(RunLimits.class);
+
+    static final long DEFAULT_GRACE_MILLIS = 1_000;
+    static final int DEFAULT_OUTPUT_BYTES = 1024 * 1024;
+    static final int MAX_OUTPUT_BYTES = 256 * 1024 * 1024;
+
+    static final RunLimits NONE = new RunLimits(0, 0, 0, DEFAULT_GRACE_MILLIS, DEFAULT_OUTPUT_BYTES);
+
+    static RunLimits fromJson(JSONObject config) {
+        JSONObject limits = config.optJSONObject("limits");
+        if (limits == null) {
+            return NONE;
+        }
+        return new RunLimits(
+                limit(limits, "wallTimeMs", 0),
+                limit(limits, "cpuTimeMs", 0),
+                limit(limits, "allocatedBytes", 0),
+                limit(limits, "graceMs", DEFAULT_GRACE_MILLIS),
+                outputBytes(limits, DEFAULT_OUTPUT_BYTES));
+    }
+
+    /**
+     * "limits" eines einzelnen Auftrags Nicht gesetzte Werte ändern in narrow nichts
+     */
+    static RunLimits forJob(JSONObject job) {
+        JSONObject limits = job.getJSONObject("limits");
+        return new RunLimits(
+                limit(limits, "wallTimeMs", 0),
+                limit(limits, "cpuTimeMs", 0),
+                limit(limits, "allocatedBytes", 0),
+                limit(limits, "graceMs", Long.MAX_VALUE),
+                outputBytes(limits, MAX_OUTPUT_BYTES));
+    }
+
+    private static int outputBytes(JSONObject limits, int defaultValue) {
+        long value = limit(limits, "outputBytes", 0);
+        if (value > MAX_OUTPUT_BYTES) {
+            logger.warn("WARNING: Limit 'outputBytes' capped at " + MAX_OUTPUT_BYTES + ": " + value);
+            return MAX_OUTPUT_BYTES;
+        }
+        // Unter 2 Bytes gibt es keinen Ring
+        return value == 0 ? defaultValue : (int) Math.max(2, value);
+    }
+
+    /**
+     * Ungültige Werte werden wie die übrigen Regeln mit einer Warnung übersprungen
+     */
+    private static long limit(JSONObject limits, String key, long defaultValue) {
+        if (!limits.has(key)) {
+            return defaultValue;
+        }
+        long value = limits.optLong(key, -1);
+        if (value < 0) {
+            logger.warn("WARNING: Ignoring invalid limit '" + key + "': " + limits.opt(key));
+            return defaultValue;
+        }
+        return value;
+    }
+
+    /**
+     * Budgets eines Auftrags innerhalb dieser Policy Ein Auftrag kann nur verschärfen:
+     * pro Budget gilt das kleinere gesetzte auch für graceMs und outputBytes
+     */
+    RunLimits narrow(RunLimits job) {
+        if (job == null) {
+            return this;
+        }
+        return new RunLimits(
+                tighter(wallMillis, job.wallMillis),
+                tighter(cpuMillis, job.cpuMillis),
+                tighter(allocatedBytes, job.allocatedBytes),
+                Math.min(graceMillis, job.graceMillis),
+                Math.min(outputBytes, job.outputBytes));
+    }
+
+    private static long tighter(long policy, long job) {
+        if (policy == 0 || job == 0) {
+            return Math.max(policy, job);
+        }
+        return Math.min(policy, job);
+    }
+
+    boolean isUnlimited() {
+        return wallMillis == 0 && cpuMillis == 0 && allocatedBytes == 0;
+    }
+
+    /**
+     * Beschreibung des ersten überschrittenen Budgets oder null
+     */
+    String exceeded(RunWatchdog.Usage usage) {
+        if (wallMillis > 0 && usage.wallMillis() > wallMillis) {
+            return "wall time " + usage.wallMillis() + " ms exceeds limit of " + wallMillis + " ms";
+        }
+        if (cpuMillis > 0 && usage.cpuMillis() > cpuMillis) {
+            return "CPU time " + usage.cpuMillis() + " ms exceeds limit of " + cpuMillis + " ms";
+        }
+        if (allocatedBytes > 0 && usage.allocatedBytes() > allocatedBytes) {
+            return "allocated " + usage.allocatedBytes() + " bytes exceeds limit of " + allocatedBytes + " bytes";
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        if (isUnlimited()) {
+            return "unlimited";
+        }
+        return "wall=" + (wallMillis == 0 ? "-" : wallMillis + "ms")
+                + " cpu=" + (cpuMillis == 0 ? "-" : cpuMillis + "ms")
+                + " alloc=" + (allocatedBytes == 0 ? "-" : allocatedBytes + "B")
+                + " grace=" + graceMillis + "ms"
+                + " output=" + outputBytes + "B";
+    }
+}
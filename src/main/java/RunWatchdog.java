@@ -0,0 +1,274 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
+import org.json.JSONObject;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Führt Benutzercode auf einem eigenen Plattform-Thread aus und überwacht dessen Budgets
+ *
+ * Jeder Lauf bekommt eine eigene ThreadGroup damit auch Threads erfasst werden die der
+ * Benutzercode startet Virtuelle Threads landen in keiner Gruppe und haben für ThreadMXBean
+ * keine CPU-Zeit oder Allokationen Benutzercode kann sie deshalb nicht starten (die Aufrufe
+ * sind über MethodRules.VIRTUAL_THREAD_RULES immer gesperrt)
+ * Ein einziger Daemon-Thread tastet alle überwachten Läufe alle paar Millisekunden ab:
+ * CPU-Zeit und allokierte Bytes über com.sun.management.ThreadMXBean in einem Aufruf pro Lauf
+ *
+ * Wie beim normalen main-Thread gilt ein Lauf erst als fertig wenn auch alle von ihm
+ * gestarteten Nicht-Daemon-Threads beendet sind
+ *
+ * Bei Überschreitung werden alle Threads des Laufs unterbrochen Reagieren sie nicht
+ * innerhalb von graceMs wird der Lauf aufgegeben: der Aufrufer bekommt sofort sein Ergebnis
+ * und die Threads laufen mit minimaler Priorität weiter bis der Prozess endet
+ * (Thread.stop gibt es seit JDK 20 nicht mehr) Im Einzelmodus beendet Main dann den Prozess
+ */
+final class RunWatchdog {
+
+    private static final Logger logger = LogManager.getLogger(RunWatchdog.class);
+
+    static final long DEFAULT_INTERVAL_MILLIS = 10;
+
+    private static final RunWatchdog shared = new RunWatchdog(DEFAULT_INTERVAL_MILLIS);
+
+    private final long intervalMillis;
+    private final com.sun.management.ThreadMXBean threads;
+    private final Set<Run> watched = ConcurrentHashMap.newKeySet();
+    private Thread sampler;
+
+    RunWatchdog(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (threads.isThreadCpuTimeSupported() && !threads.isThreadCpuTimeEnabled()) {
+            threads.setThreadCpuTimeEnabled(true);
+        }
+        if (threads.isThreadAllocatedMemorySupported() && !threads.isThreadAllocatedMemoryEnabled()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+        }
+    }
+
+    static RunWatchdog shared() {
+        return shared;
+    }
+
+    /**
+     * Verbrauch eines Laufs über alle seine Threads
+     */
+    record Usage(long wallMillis, long cpuMillis, long allocatedBytes, int threads) {
+
+        JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("wallMs", wallMillis);
+            json.put("cpuMs", cpuMillis);
+            json.put("allocatedBytes", allocatedBytes);
+            json.put("threads", threads);
+            return json;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("wall=%d ms cpu=%d ms allocated=%.1f MB threads=%d",
+                    wallMillis, cpuMillis, allocatedBytes / (1024.0 * 1024.0), threads);
+        }
+    }
+
+    /**
+     * Ergebnis eines Laufs violation ist null wenn alle Budgets eingehalten wurden
+     * failure ist die Exception des Benutzercodes (oder null)
+     */
+    record Outcome(Usage usage, String violation, Throwable failure, boolean abandoned) {
+    }
+
+    /**
+     * Startet body auf einem neuen Thread und wartet bis er fertig ist oder aufgegeben wurde
+     */
+    Outcome run(String name, RunLimits limits, Callable<?> body) throws InterruptedException {
+        Run run = new Run(name, limits, body);
+        if (!limits.isUnlimited()) {
+            watched.add(run);
+            ensureSampler();
+        }
+        run.thread.start();
+        try {
+            run.done.await();
+        } catch (InterruptedException e) {
+            run.interruptAll();
+            throw e;
+        } finally {
+            watched.remove(run);
+        }
+        return run.outcome();
+    }
+
+    private synchronized void ensureSampler() {
+        if (sampler != null) {
+            return;
+        }
+        sampler = Thread.ofPlatform().name("sandbox-watchdog").daemon(true)
+                .inheritInheritableThreadLocals(false).start(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (Run run : watched) {
+                    check(run);
+                }
+            }
+        });
+    }
+
+    private void check(Run run) {
+        if (run.done.getCount() == 0) {
+            return;
+        }
+        Usage usage = run.sample();
+        long now = System.nanoTime();
+        if (run.violation == null) {
+            String violation = run.limits.exceeded(usage);
+            if (violation != null) {
+                logger.warn("Run " + run.name + " exceeded its budget (" + violation + ") interrupting");
+                run.violation = violation;
+                run.interruptedAtNanos = now;
+                run.interruptAll();
+            }
+        } else if (now - run.interruptedAtNanos > run.limits.graceMillis() * 1_000_000) {
+            logger.error("Run " + run.name + " did not stop within " + run.limits.graceMillis()
+                    + " ms after interrupt abandoning " + usage.threads() + " thread(s)");
+            run.abandon();
+        } else {
+            // Interrupts können vom Benutzercode verschluckt werden
+            run.interruptAll();
+        }
+    }
+
+    /**
+     * Ein laufender Auftrag mit seiner ThreadGroup
+     */
+    private final class Run {
+
+        private final String name;
+        private final RunLimits limits;
+        private final ThreadGroup group;
+        private final Thread thread;
+        private final long startNanos = System.nanoTime();
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        // Letzter bekannter Stand pro Thread-ID {cpuNanos, allocatedBytes} damit auch
+        // bereits beendete Threads mitzählen Zugriff nur unter synchronized(this)
+        private final Map<Long, long[]> seen = new HashMap<>();
+        private Usage usage = new Usage(0, 0, 0, 0);
+
+        private volatile Throwable failure;
+        private volatile String violation;
+        private volatile boolean abandoned;
+        private long interruptedAtNanos;
+
+        private Run(String name, RunLimits limits, Callable<?> body) {
+            this.name = name;
+            this.limits = limits;
+            this.group = new ThreadGroup("sandbox-" + name);
+            // Der Lauf-Thread führt den Auftrag selbst aus seine Ausgaben gehören in dessen Log
+            // (logFile auch log=none) Hilfs-Threads landen über den Default der Route in cclsandbox.log
+            Map<String, String> context = ThreadContext.getImmutableContext();
+            this.thread = Thread.ofPlatform()
+                    .group(group)
+                    .name("sandbox-run-" + name)
+                    .unstarted(() -> {
+                        ThreadContext.putAll(context);
+                        try {
+                            body.call();
+                        } catch (Throwable t) {
+                            failure = t;
+                        } finally {
+                            awaitOtherThreads();
+                            sample();
+                            done.countDown();
+                            ThreadContext.clearMap();
+                        }
+                    });
+        }
+
+        /**
+         * Wartet auf alle übrigen Nicht-Daemon-Threads der Gruppe Ein Interrupt des
+         * Watchdogs beendet das Warten
+         */
+        private void awaitOtherThreads() {
+            while (true) {
+                Thread[] active = new Thread[group.activeCount() + 8];
+                int count = group.enumerate(active, true);
+                Thread next = null;
+                for (int i = 0; i < count && next == null; i++) {
+                    if (active[i] != Thread.currentThread() && !active[i].isDaemon()) {
+                        next = active[i];
+                    }
+                }
+                if (next == null) {
+                    return;
+                }
+                try {
+                    next.join();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        synchronized Usage sample() {
+            if (abandoned) {
+                return usage;
+            }
+            Thread[] active = new Thread[group.activeCount() + 8];
+            int count = group.enumerate(active, true);
+            long[] ids = new long[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = active[i].threadId();
+            }
+            long[] cpu = threads.getThreadCpuTime(ids);
+            long[] allocated = threads.getThreadAllocatedBytes(ids);
+            for (int i = 0; i < count; i++) {
+                long[] last = seen.computeIfAbsent(ids[i], id -> new long[2]);
+                last[0] = Math.max(last[0], cpu[i]);
+                last[1] = Math.max(last[1], allocated[i]);
+            }
+            long cpuNanos = 0;
+            long allocatedBytes = 0;
+            for (long[] last : seen.values()) {
+                cpuNanos += last[0];
+                allocatedBytes += last[1];
+            }
+            usage = new Usage((System.nanoTime() - startNanos) / 1_000_000, cpuNanos / 1_000_000,
+                    allocatedBytes, seen.size());
+            return usage;
+        }
+
+        void interruptAll() {
+            Thread[] active = new Thread[group.activeCount() + 8];
+            int count = group.enumerate(active, true);
+            for (int i = 0; i < count; i++) {
+                active[i].interrupt();
+            }
+        }
+
+        synchronized void abandon() {
+            Thread[] active = new Thread[group.activeCount() + 8];
+            int count = group.enumerate(active, true);
+            for (int i = 0; i < count; i++) {
+                active[i].setPriority(Thread.MIN_PRIORITY);
+            }
+            abandoned = true;
+            done.countDown();
+        }
+
+        synchronized Outcome outcome() {
+            return new Outcome(usage, violation, failure, abandoned);
+        }
+    }
+}
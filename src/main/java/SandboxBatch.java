@@ -0,0 +1,229 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch-Modus: eine Datei mit JSON-Lines-Aufträgen in einer JVM abarbeiten (mode=batch)
+ *
+ * Jede Zeile ist ein Auftrag wie im Server-Modus, optional mit eigenen "limits"
+ *   {"id":"s1","pathfrom":"submissions/s1","main-class":"App","args":["a"],"limits":{"wallTimeMs":5000}}
+ * Ohne "id" gilt die Zeilennummer Für jeden Auftrag wird sofort nach seinem Ende eine
+ * Zeile mit SandboxResult als JSON an die Ergebnisdatei gehängt (Reihenfolge nach
+ * Fertigstellung) Jeder Auftrag bekommt einen eigenen BlockingClassLoader
+ *
+ * Mit resume werden Aufträge deren id schon in der Ergebnisdatei steht übersprungen Eine
+ * halb geschriebene letzte Zeile (Abbruch mitten im Schreiben) wird vorher abgeschnitten
+ *
+ * Die Datei wird zeilenweise gelesen höchstens 2 * threads Aufträge sind gleichzeitig
+ * unterwegs Auch riesige Dateien brauchen also kaum Speicher
+ */
+final class SandboxBatch {
+
+    private static final Logger logger = LogManager.getLogger(SandboxBatch.class);
+
+    /**
+     * Zähler eines Batch-Laufs
+     */
+    record Summary(int completed, int skipped, int invalid, int lost, Map<SandboxResult.Status, Integer> byStatus,
+                   long durationMillis) {
+
+        @Override
+        public String toString() {
+            return completed + " jobs in " + durationMillis + " ms (" + byStatus + "), skipped=" + skipped
+                    + " invalid=" + invalid + " lost=" + lost;
+        }
+    }
+
+    private final Path jobsFile;
+    private final Path resultsFile;
+    private final int threads;
+    private final boolean resume;
+    private final String logFile;
+
+    // Zugriff nur unter synchronized(this)
+    private final Map<SandboxResult.Status, Integer> byStatus = new EnumMap<>(SandboxResult.Status.class);
+    private int completed;
+    private int invalid;
+    // Aufträge deren Ergebniszeile nicht geschrieben werden konnte
+    private int lost;
+
+    SandboxBatch(Path jobsFile, Path resultsFile, int threads, boolean resume, String logFile) {
+        this.jobsFile = jobsFile;
+        this.resultsFile = resultsFile;
+        this.threads = threads;
+        this.resume = resume;
+        this.logFile = logFile;
+    }
+
+    /**
+     * Arbeitet die ganze Datei ab und kehrt erst zurück wenn alle Ergebnisse geschrieben sind
+     */
+    Summary run() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        OutputCapture.install();
+        Set<String> done = resume ? completedIds() : Set.of();
+        if (!done.isEmpty()) {
+            logger.info("Batch: {} Aufträge aus {} sind schon fertig und werden übersprungen", done.size(), resultsFile);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().name("sandbox-batch-", 0).factory());
+        Semaphore inFlight = new Semaphore(2 * threads);
+        int skipped = 0;
+        StandardOpenOption mode = resume ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+        try (BufferedReader reader = Files.newBufferedReader(jobsFile, StandardCharsets.UTF_8);
+             Writer writer = Files.newBufferedWriter(resultsFile, StandardCharsets.UTF_8,
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                String defaultId = String.valueOf(lineNumber);
+                SandboxJob job;
+                try {
+                    job = SandboxJob.fromJson(new JSONObject(line), defaultId);
+                } catch (JSONException | IllegalArgumentException e) {
+                    if (!done.contains(defaultId)) {
+                        JSONObject error = new JSONObject();
+                        error.put("id", defaultId);
+                        error.put("status", "INVALID_JOB");
+                        error.put("error", e.getMessage());
+                        write(writer, error, null);
+                    }
+                    continue;
+                }
+                if (done.contains(job.id())) {
+                    skipped++;
+                    continue;
+                }
+                inFlight.acquire();
+                executor.execute(() -> {
+                    try {
+                        SandboxResult result = runJob(job);
+                        write(writer, result.toJson(), result.status());
+                    } catch (Throwable t) {
+                        // Auch dann eine Zeile damit kein Auftrag ohne Ergebnis bleibt
+                        logger.error("ERROR: Auftrag " + job.id() + " ist ohne Ergebnis abgebrochen", t);
+                        JSONObject error = new JSONObject();
+                        error.put("id", job.id());
+                        error.put("status", SandboxResult.Status.FAILED.name());
+                        error.put("error", t.toString());
+                        write(writer, error, SandboxResult.Status.FAILED);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        synchronized (this) {
+            return new Summary(completed, skipped, invalid, lost, Map.copyOf(byStatus),
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private SandboxResult runJob(SandboxJob job) {
+        ThreadContext.put("logFile", logFile);
+        try {
+            logger.info("Starte Auftrag " + job.id() + " (" + job.mainClass() + ")");
+            SandboxResult result = SandboxRunner.run(job, true);
+            logger.info("Auftrag " + job.id() + " beendet: " + result.status() + " in " + result.durationMillis() + " ms");
+            return result;
+        } finally {
+            ThreadContext.remove("logFile");
+        }
+    }
+
+    /**
+     * Hängt eine Ergebniszeile an und schreibt sie sofort raus status null = ungültiger Auftrag
+     */
+    private synchronized void write(Writer writer, JSONObject result, SandboxResult.Status status) {
+        try {
+            writer.write(result.toString());
+            writer.write('\n');
+            writer.flush();
+        } catch (IOException e) {
+            logger.error("ERROR: Konnte Ergebnis für Auftrag " + result.opt("id") + " nicht schreiben", e);
+            lost++;
+            return;
+        }
+        if (status == null) {
+            invalid++;
+        } else {
+            completed++;
+            byStatus.merge(status, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * ids aller vollständig geschriebenen Ergebnisse Schneidet eine unvollständige letzte Zeile ab
+     */
+    private Set<String> completedIds() throws IOException {
+        if (!Files.isRegularFile(resultsFile)) {
+            return Set.of();
+        }
+        truncatePartialLine();
+        Set<String> ids = new HashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(resultsFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    ids.add(new JSONObject(line).getString("id"));
+                } catch (JSONException e) {
+                    logger.warn("WARNUNG: Ungültige Zeile in {} wird ignoriert: {}", resultsFile, e.getMessage());
+                }
+            }
+        }
+        return ids;
+    }
+
+    private void truncatePartialLine() throws IOException {
+        try (FileChannel channel = FileChannel.open(resultsFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            ByteBuffer one = ByteBuffer.allocate(1);
+            long end = size;
+            // Rückwärts bis zum letzten Zeilenende suchen
+            while (end > 0) {
+                one.clear();
+                channel.read(one, end - 1);
+                if (one.get(0) == '\n') {
+                    break;
+                }
+                end--;
+            }
+            if (end < size) {
+                logger.warn("WARNUNG: Unvollständige letzte Zeile in {} ({} Bytes) wird verworfen", resultsFile, size - end);
+                channel.truncate(end);
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Eigene JFR-Events der Sandbox
+ *
+ * Ohne laufende Aufzeichnung kosten sie praktisch nichts: shouldCommit() ist dann false
+ * und die Felder werden gar nicht erst befüllt Aufzeichnen z.B. mit
+ *   java -XX:StartFlightRecording=filename=sandbox.jfr -jar cclsandbox.jar ...
+ *   jfr print --events SandboxClassDefine sandbox.jfr
+ */
+final class SandboxEvents {
+
+    private SandboxEvents() {
+    }
+
+    @Name("SandboxClassDefine")
+    @Label("Sandbox Class Define")
+    @Category("Sandbox")
+    @Description("Definition einer Benutzerklasse inklusive Lesen und Umschreiben der Bytes")
+    static final class ClassDefine extends Event {
+
+        @Label("Class Name")
+        String className;
+
+        @Label("Size")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("SandboxDenied")
+    @Label("Sandbox Denied")
+    @Category("Sandbox")
+    @Description("Von der Policy abgelehnte Klasse oder Methode")
+    static final class Denied extends Event {
+
+        @Label("Name")
+        String name;
+
+        @Label("Kind")
+        String kind;
+
+        @Label("Policy")
+        String policy;
+    }
+
+    @Name("SandboxRunFinished")
+    @Label("Sandbox Run Finished")
+    @Category("Sandbox")
+    @Description("Ende eines Sandbox-Laufs mit Ergebnis und Verbrauch")
+    static final class RunFinished extends Event {
+
+        @Label("Run Id")
+        String runId;
+
+        @Label("Status")
+        String status;
+
+        @Label("CPU Time")
+        @Timespan(Timespan.MILLISECONDS)
+        long cpuTime;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocatedBytes;
+
+        @Label("Classes Defined")
+        long classesDefined;
+
+        @Label("Denied")
+        long denied;
+    }
+
+    static void denied(String name, String kind, String policy) {
+        Denied event = new Denied();
+        if (event.shouldCommit()) {
+            event.name = name;
+            event.kind = kind;
+            event.policy = policy;
+            event.commit();
+        }
+    }
+}
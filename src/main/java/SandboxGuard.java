@@ -0,0 +1,23 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Ziel der umgeschriebenen Aufrufe blockierter Methoden (siehe CallSiteRewriter)
+ *
+ * Die erzeugten Stubs rufen denied() auf und werfen die gelieferte Exception
+ * Die Klasse wird immer vom Parent geladen damit Benutzercode sie nicht ersetzen kann
+ */
+public final class SandboxGuard {
+
+    private static final Logger logger = LogManager.getLogger(SandboxGuard.class);
+    private static final DenyLog denyLog = new DenyLog(logger, "method");
+
+    private SandboxGuard() {
+    }
+
+    public static SecurityException denied(String member) {
+        SandboxEvents.denied(member, "method", null);
+        denyLog.denied(member);
+        return new SecurityException("Access denied! The method '" + member + "' is blocked by security policy.");
+    }
+}
@@ -0,0 +1,68 @@
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ein einzelner Sandbox-Auftrag
+ *
+ * Die Schlüssel entsprechen den Kommandozeilen-Parametern von Main
+ * (pathfrom, main-class, config, pathto, prescan, prefetch) plus optionalen Argumenten für main()
+ * pathTo == null bedeutet: im Speicher kompilieren ohne .class-Dateien zu schreiben
+ * limits == null bedeutet: nur die Budgets der Policy (siehe RunLimits.narrow)
+ */
+record SandboxJob(String id, String pathFrom, String mainClass, String configPath, String pathTo,
+                  List<String> args, boolean preScan, boolean prefetch, RunLimits limits) {
+
+    static final String DEFAULT_CONFIG = "config.json";
+
+    SandboxJob {
+        args = List.copyOf(args);
+    }
+
+    /**
+     * Auftrag aus den geparsten Kommandozeilen-Parametern
+     */
+    static SandboxJob fromParams(Map<String, String> params) {
+        return new SandboxJob(
+                "main",
+                params.get("pathfrom"),
+                params.get("main-class"),
+                params.getOrDefault("config", DEFAULT_CONFIG),
+                // Ohne pathto wird im Speicher kompiliert
+                params.get("pathto"),
+                List.of(),
+                Boolean.parseBoolean(params.get("prescan")),
+                Boolean.parseBoolean(params.get("prefetch")),
+                null);
+    }
+
+    /**
+     * Auftrag aus einer JSON-Zeile des Server-Protokolls bzw. einer Batch-Datei
+     * "limits" hat dasselbe Format wie in der config.json
+     */
+    static SandboxJob fromJson(JSONObject json, String defaultId) {
+        if (!json.has("pathfrom") || !json.has("main-class")) {
+            throw new IllegalArgumentException("Job needs 'pathfrom' and 'main-class'");
+        }
+        List<String> args = new ArrayList<>();
+        JSONArray jsonArgs = json.optJSONArray("args");
+        if (jsonArgs != null) {
+            for (int i = 0; i < jsonArgs.length(); i++) {
+                args.add(jsonArgs.getString(i));
+            }
+        }
+        return new SandboxJob(
+                json.optString("id", defaultId),
+                json.getString("pathfrom"),
+                json.getString("main-class"),
+                json.optString("config", DEFAULT_CONFIG),
+                json.optString("pathto", null),
+                args,
+                json.optBoolean("prescan", false),
+                json.optBoolean("prefetch", false),
+                json.has("limits") ? RunLimits.forJob(json) : null);
+    }
+}
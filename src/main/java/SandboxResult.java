@@ -0,0 +1,52 @@
+import org.json.JSONObject;
+
+/**
+ * Ergebnis eines Sandbox-Laufs usage ist null wenn der Benutzercode nicht gestartet wurde
+ * metrics ist null wenn kein ClassLoader erstellt wurde
+ */
+record SandboxResult(String id, Status status, String error, long durationMillis, String stdout, String stderr,
+                     RunWatchdog.Usage usage, LoaderMetrics.Snapshot metrics) {
+
+    enum Status {
+        /** Benutzercode lief ohne Exception durch */
+        OK(0),
+        /** Benutzercode hat eine Exception geworfen */
+        FAILED(0),
+        INVALID_PATH(1),
+        COMPILE_ERROR(1),
+        CLASS_NOT_FOUND(1),
+        NO_ENTRY_POINT(1),
+        /** Vorabprüfung hat blockierte Referenzen gefunden Benutzercode wurde nicht gestartet */
+        REJECTED(1),
+        /** Ein Budget aus "limits" wurde überschritten der Lauf wurde unterbrochen oder aufgegeben */
+        LIMIT_EXCEEDED(1),
+        /** Supervisor-Modus: die Worker-JVM endete während des Laufs (z.B. System.exit im Benutzercode) */
+        WORKER_EXITED(1);
+
+        /** Exit-Code im Einzelmodus wie bisher in Main */
+        final int exitCode;
+
+        Status(int exitCode) {
+            this.exitCode = exitCode;
+        }
+    }
+
+    JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        json.put("status", status.name());
+        json.put("durationMs", durationMillis);
+        if (error != null) {
+            json.put("error", error);
+        }
+        if (usage != null) {
+            json.put("usage", usage.toJson());
+        }
+        if (metrics != null) {
+            json.put("metrics", metrics.toJson());
+        }
+        json.put("stdout", stdout == null ? "" : stdout);
+        json.put("stderr", stderr == null ? "" : stderr);
+        return json;
+    }
+}
@@ -0,0 +1,336 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Führt einen SandboxJob aus: ggf. kompilieren, BlockingClassLoader erstellen
+ * und main(String[]) bzw. run() des Benutzercodes aufrufen
+ *
+ * Wird vom Einzelmodus in Main und vom Server-Modus genutzt Jeder Lauf bekommt
+ * seinen eigenen ClassLoader
+ */
+final class SandboxRunner {
+
+    private static final Logger logger = LogManager.getLogger(SandboxRunner.class);
+
+    private SandboxRunner() {
+    }
+
+    /**
+     * Führt den Auftrag aus Bei captureOutput landet System.out/err des Laufs im Ergebnis
+     */
+    static SandboxResult run(SandboxJob job, boolean captureOutput) {
+        long start = System.nanoTime();
+        SandboxEvents.RunFinished event = new SandboxEvents.RunFinished();
+        event.begin();
+        SandboxResult result;
+        if (!captureOutput) {
+            Outcome outcome = execute(job);
+            result = new SandboxResult(job.id(), outcome.status, outcome.error, elapsedMillis(start), null, null,
+                    outcome.usage, outcome.metrics);
+        } else {
+            // Der Handle hält die Policy bis zum Ende des Laufs im Cache so findet der Loader
+            // sie dort statt config.json erneut zu parsen
+            try (PolicyRegistry.Handle policy = PolicyRegistry.shared().acquire(job.configPath());
+                 OutputCapture capture = OutputCapture.begin(
+                         policy.current().limits().narrow(job.limits()).outputBytes())) {
+                Outcome outcome = execute(job);
+                result = new SandboxResult(job.id(), outcome.status, outcome.error, elapsedMillis(start),
+                        capture.stdout(), capture.stderr(), outcome.usage, outcome.metrics);
+                if (capture.truncated() > 0) {
+                    logger.warn("Ausgabe von Auftrag " + job.id() + " gekürzt: " + capture.truncated() + " Bytes verworfen");
+                }
+            }
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.runId = result.id();
+            event.status = result.status().name();
+            if (result.usage() != null) {
+                event.cpuTime = result.usage().cpuMillis();
+                event.allocatedBytes = result.usage().allocatedBytes();
+            }
+            if (result.metrics() != null) {
+                event.classesDefined = result.metrics().classesDefined();
+                event.denied = result.metrics().denied();
+            }
+            event.commit();
+        }
+        return result;
+    }
+
+    private record Outcome(SandboxResult.Status status, String error, RunWatchdog.Usage usage,
+                           LoaderMetrics.Snapshot metrics) {
+
+        Outcome(SandboxResult.Status status, String error) {
+            this(status, error, null, null);
+        }
+    }
+
+    private static Outcome execute(SandboxJob job) {
+        String pathFrom = job.pathFrom();
+        String mainClassName = job.mainClass();
+        // Mehrere Einträge mit File.pathSeparator getrennt (vorkompiliert, siehe CompositeClassSource)
+        boolean isClassPath = pathFrom.contains(File.pathSeparator);
+        Path sourcePath = Paths.get(isClassPath ? "" : pathFrom);
+        boolean isJar = !isClassPath && pathFrom.endsWith(".jar") && Files.isRegularFile(sourcePath);
+        boolean isDir = !isClassPath && Files.isDirectory(sourcePath);
+        String effectiveUserCodePath = null;
+        Map<String, byte[]> compiledClasses = null;
+        RunWatchdog.Usage usage = null;
+        BlockingClassLoader customLoader = null;
+        LoaderPool.Lease lease = null;
+
+        try {
+            if (isClassPath) {
+                logger.info("Lade von Klassenpfad: " + pathFrom);
+                effectiveUserCodePath = pathFrom;
+            } else if (isJar) {
+                logger.info("Lade von JAR: " + pathFrom);
+                effectiveUserCodePath = pathFrom;
+            } else if (isDir) {
+                // Prüfen ob das Verzeichnis .java-Dateien enthält
+                boolean hasJavaFiles;
+                try (Stream<Path> stream = Files.walk(sourcePath)) {
+                    hasJavaFiles = stream.anyMatch(file -> file.toString().endsWith(".java"));
+                } catch (IOException e) {
+                    logger.error("ERROR: Konnte Quellverzeichnis nicht prüfen: " + pathFrom, e);
+                    return new Outcome(SandboxResult.Status.INVALID_PATH, e.toString());
+                }
+
+                if (hasJavaFiles && job.pathTo() == null) {
+                    // Bytecode geht direkt in den ClassLoader ohne Umweg über die Platte
+                    logger.info("Lade von Quellverzeichnis: " + pathFrom);
+                    logger.info("Kompiliere im Speicher");
+                    InMemoryCompiler.Result compiled = InMemoryCompiler.shared().compile(sourcePath);
+                    if (!compiled.success()) {
+                        logger.error("ERROR: Kompilierung fehlgeschlagen Programm wird beendet\n" + compiled.diagnostics());
+                        return new Outcome(SandboxResult.Status.COMPILE_ERROR, compiled.diagnostics());
+                    }
+                    logger.info("Kompilierung erfolgreich");
+                    compiledClasses = compiled.classes();
+                } else if (hasJavaFiles) {
+                    Path compileTo = Paths.get(job.pathTo());
+                    logger.info("Lade von Quellverzeichnis: " + pathFrom);
+                    logger.info("Kompiliere nach: " + compileTo);
+
+                    boolean compiled = compileSourceFiles(sourcePath, compileTo);
+                    if (!compiled) {
+                        logger.error("ERROR: Kompilierung fehlgeschlagen Programm wird beendet");
+                        return new Outcome(SandboxResult.Status.COMPILE_ERROR, "Compilation failed");
+                    }
+                    logger.info("Kompilierung erfolgreich");
+                    effectiveUserCodePath = compileTo.toString(); // Kompilierpfad nutzen
+                } else {
+                    logger.info("Lade von vorkompiliertem Verzeichnis: " + pathFrom);
+                    // Keine .java-Dateien gefunden wir nehmen an es ist ein Ordner mit .class-Dateien
+                    effectiveUserCodePath = pathFrom; // pathFrom direkt nutzen
+                }
+            } else {
+                logger.error("ERROR: --pathfrom ist kein gültiges Verzeichnis oder .jar-Archiv: " + pathFrom);
+                return new Outcome(SandboxResult.Status.INVALID_PATH, "Not a directory or .jar file: " + pathFrom);
+            }
+
+            // 1. Custom ClassLoader erstellen (bei JARs wenn möglich vorgewärmt aus dem Pool)
+            LoaderPool pool = isJar ? LoaderPool.shared() : null;
+            if (pool != null) {
+                lease = pool.checkout(sourcePath, job.configPath());
+                customLoader = lease.loader();
+                logger.info("Loader pool " + (lease.hit() ? "hit" : "miss") + ": " + pool.stats());
+            } else {
+                customLoader = compiledClasses != null
+                        ? new BlockingClassLoader(
+                                ClassLoader.getSystemClassLoader(),
+                                // Ressourcen (z.B. .properties) liegen weiter im Quellverzeichnis
+                                new MemoryClassSource(compiledClasses, new DirectoryClassSource(sourcePath)),
+                                job.configPath())
+                        : new BlockingClassLoader(
+                                ClassLoader.getSystemClassLoader(),
+                                effectiveUserCodePath,
+                                job.configPath());
+            }
+
+            // Optional: alle Klassen vorab statisch prüfen und bei Verstößen gar nicht erst starten
+            if (job.preScan()) {
+                PreScan.Report report = customLoader.preScan();
+                if (!report.clean()) {
+                    logger.error("ERROR: Vorabprüfung fehlgeschlagen Benutzercode wird nicht ausgeführt\n" + report.describe());
+                    return new Outcome(SandboxResult.Status.REJECTED, report.describe(), null, customLoader.metrics());
+                }
+            }
+
+            // 2. Main-Klasse des Benutzers auf einem eigenen überwachten Thread laden und ausführen
+            logger.info("\n--- Führe Benutzercode in Sandbox aus ---");
+            RunLimits limits = customLoader.limits().narrow(job.limits());
+            BlockingClassLoader loader = customLoader;
+            if (job.prefetch()) {
+                loader.prefetch(mainClassName);
+            }
+            RunWatchdog.Outcome run = RunWatchdog.shared().run(job.id(), limits, () -> {
+                Class<?> userAppClass = loader.loadClass(mainClassName);
+                invokeEntryPoint(userAppClass, mainClassName, job.args());
+                return null;
+            });
+            usage = run.usage();
+            DenyLog.flushAll();
+            logger.info("Verbrauch: " + usage + " (Limits: " + limits + ")");
+
+            logger.info("Decision cache: " + customLoader.decisionCacheStats());
+            if (isJar) {
+                logger.info("Bytecode cache: " + BytecodeCache.shared().stats());
+            }
+            if (run.violation() != null) {
+                logger.error("ERROR: Budget überschritten: " + run.violation()
+                        + (run.abandoned() ? " Lauf wurde aufgegeben" : ""));
+                return new Outcome(SandboxResult.Status.LIMIT_EXCEEDED, run.violation(), usage, metricsOf(customLoader));
+            }
+            if (run.failure() instanceof Exception e) {
+                throw e;
+            }
+            if (run.failure() instanceof Error e) {
+                // Der Lauf-Thread ist schon abgewickelt auch ein StackOverflowError oder
+                // OutOfMemoryError des Benutzercodes beendet nur diesen Lauf
+                return failed(e, usage, customLoader);
+            }
+            return new Outcome(SandboxResult.Status.OK, null, usage, metricsOf(customLoader));
+
+        } catch (ClassNotFoundException e) {
+            logger.error("ERROR: Konnte Main-Klasse '" + mainClassName + "' in " + pathFrom + " nicht finden", e);
+            return new Outcome(SandboxResult.Status.CLASS_NOT_FOUND, e.getMessage(), usage, metricsOf(customLoader));
+        } catch (NoSuchMethodException e) {
+            // Fängt die Exception falls weder 'main' noch 'run' gefunden wurde
+            logger.error("Ausführung fehlgeschlagen: Konnte keinen passenden Einstiegspunkt finden", e);
+            return new Outcome(SandboxResult.Status.NO_ENTRY_POINT, e.getMessage(), usage, metricsOf(customLoader));
+        } catch (Exception e) {
+            logger.error("Ein Fehler ist während der Ausführung der Benutzeranwendung aufgetreten", e);
+            Throwable cause = e instanceof InvocationTargetException && e.getCause() != null ? e.getCause() : e;
+            return new Outcome(SandboxResult.Status.FAILED, cause.toString(), usage, metricsOf(customLoader));
+        } catch (VirtualMachineError e) {
+            throw e;
+        } catch (Error e) {
+            return failed(e, usage, customLoader);
+        } finally {
+            // Ausgeliehene Loader werden nur einmal benutzt eigene gibt der Lauf selbst frei
+            // (offene JARs, entpackte eingebettete JARs)
+            if (lease != null) {
+                lease.close();
+            } else if (customLoader != null) {
+                try {
+                    customLoader.close();
+                } catch (IOException e) {
+                    logger.warn("Konnte ClassLoader nicht schließen: " + e.getMessage());
+                }
+            }
+            LoaderLeakDetector leaks = LoaderLeakDetector.shared();
+            if (leaks != null && customLoader != null) {
+                leaks.track(customLoader, job.id());
+            }
+        }
+    }
+
+    /**
+     * Error aus dem Benutzercode z.B. ExceptionInInitializerError eines statischen Initialisierers
+     * (Method.invoke verpackt ihn nicht) ClassFormatError oder UnsupportedClassVersionError
+     */
+    private static Outcome failed(Error e, RunWatchdog.Usage usage, BlockingClassLoader loader) {
+        logger.error("Ein Fehler ist während der Ausführung der Benutzeranwendung aufgetreten", e);
+        String error = e.getCause() != null ? e + ": " + e.getCause() : e.toString();
+        return new Outcome(SandboxResult.Status.FAILED, error, usage, metricsOf(loader));
+    }
+
+    /**
+     * Ruft 'public static void main(String[])' oder sonst 'public void run()' auf
+     */
+    private static void invokeEntryPoint(Class<?> userAppClass, String mainClassName, List<String> args)
+            throws ReflectiveOperationException {
+        Method mainMethod = null;
+        try {
+            // Zuerst nach einer Standard 'public static void main(String[] args)' suchen
+            mainMethod = userAppClass.getMethod("main", String[].class);
+        } catch (NoSuchMethodException e) {
+            // Nicht gefunden dann probieren wir 'run()'
+        }
+
+        if (mainMethod != null) {
+            // 'main(String[])' gefunden Aufruf
+            logger.info("Fand 'public static void main(String[] args)' Methode Rufe auf...");
+            // Die 'main' Methode ist static erster Parameter für invoke ist null
+            mainMethod.invoke(null, (Object) args.toArray(new String[0]));
+        } else {
+            // 'main' nicht gefunden suche nach 'public void run()'
+            logger.info("Keine 'main(String[])' Methode gefunden Suche nach 'public void run()'...");
+            Method runMethod;
+            try {
+                runMethod = userAppClass.getMethod("run");
+            } catch (NoSuchMethodException runException) {
+                // Keine der Methoden wurde gefunden Das ist der Fehler
+                logger.error("ERROR: Main-Klasse '" + mainClassName + "' hat weder 'public static void main(String[] args)' noch 'public void run()' Methode", runException);
+                throw runException; // Exception weiterwerfen
+            }
+            // 'run()' gefunden Klasse instanziieren und aufrufen
+            Object userAppInstance = userAppClass.getDeclaredConstructor().newInstance();
+            runMethod.invoke(userAppInstance);
+        }
+    }
+
+    /**
+     * Kompiliert alle .java-Dateien aus einem Quellverzeichnis in ein Ausgabeverzeichnis
+     */
+    private static boolean compileSourceFiles(Path sourceDir, Path outputDir) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            logger.error("FEHLER: Keinen Java-Compiler gefunden Bitte mit einem JDK ausführen nicht nur JRE");
+            return false;
+        }
+
+        try (Stream<Path> stream = Files.walk(sourceDir)) {
+            List<String> javaFiles = stream
+                    .filter(file -> file.toString().endsWith(".java"))
+                    .map(Path::toString)
+                    .collect(Collectors.toList());
+
+            if (javaFiles.isEmpty()) {
+                logger.warn("WARNUNG: Keine .java-Dateien in " + sourceDir + " gefunden");
+                return true; // Kein Fehler nur nichts zu tun
+            }
+
+            // Sicherstellen dass das Ausgabeverzeichnis existiert
+            Files.createDirectories(outputDir);
+
+            String[] compilerArgs = {
+                    "-d", outputDir.toString()
+            };
+
+            // Compiler-Argumente und Dateiliste zusammenführen
+            Stream<String> argsStream = Stream.concat(Stream.of(compilerArgs), javaFiles.stream());
+
+            int compilationResult = compiler.run(null, null, null, argsStream.toArray(String[]::new));
+            return (compilationResult == 0);
+
+        } catch (IOException e) {
+            logger.error("ERROR: Konnte Quelldateien nicht lesen", e);
+            return false;
+        }
+    }
+
+    private static LoaderMetrics.Snapshot metricsOf(BlockingClassLoader loader) {
+        return loader == null ? null : loader.metrics();
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,180 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Langlebiger Server-Modus: viele Sandbox-Läufe in einer warmen JVM
+ *
+ * Protokoll: JSON-Lines über einen lokalen TCP-Socket (nur 127.0.0.1)
+ * Jede Zeile ist ein Auftrag, z.B.
+ *   {"id":"42","pathfrom":"jobs/42","main-class":"App","config":"config.json","args":["a"]}
+ * Für jeden Auftrag kommt eine Zeile mit SandboxResult als JSON zurück
+ * sobald er fertig ist (Reihenfolge nach Fertigstellung, Zuordnung über "id")
+ *
+ * Jeder Auftrag bekommt einen eigenen BlockingClassLoader Die Aufträge laufen
+ * parallel auf einem begrenzten Thread-Pool
+ *
+ * Achtung: Ruft der Benutzercode System.exit() auf wird der ganze Server beendet
+ * sofern java.lang.System.exit nicht in blockedMethods der Policy steht
+ *
+ * Im Supervisor-Modus (workers != null) laufen die Aufträge stattdessen in eigenen
+ * Worker-JVMs aus dem WorkerPool Protokoll und Antworten bleiben gleich
+ */
+final class SandboxServer {
+
+    private static final Logger logger = LogManager.getLogger(SandboxServer.class);
+
+    private final int port;
+    private final ExecutorService jobExecutor;
+    private final String logFile;
+    // null = Aufträge in dieser JVM ausführen
+    private final WorkerPool workers;
+    private final AtomicLong jobCounter = new AtomicLong();
+
+    SandboxServer(int port, int threads, String logFile) {
+        this(port, threads, logFile, null);
+    }
+
+    SandboxServer(int port, int threads, String logFile, WorkerPool workers) {
+        this.port = port;
+        this.jobExecutor = Executors.newFixedThreadPool(threads);
+        this.logFile = logFile;
+        this.workers = workers;
+    }
+
+    /**
+     * Nimmt Verbindungen an bis der Prozess beendet wird
+     */
+    void serve() throws IOException {
+        if (workers != null) {
+            workers.start();
+        } else {
+            OutputCapture.install();
+        }
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            logger.info("Sandbox-Server lauscht auf " + serverSocket.getLocalSocketAddress());
+            while (!serverSocket.isClosed()) {
+                Socket socket = serverSocket.accept();
+                Thread.ofVirtual().name("sandbox-conn-", 0).start(() -> handleConnection(socket));
+            }
+        } finally {
+            jobExecutor.shutdown();
+        }
+    }
+
+    private void handleConnection(Socket socket) {
+        ThreadContext.put("logFile", logFile);
+        logger.info("Neue Verbindung von " + socket.getRemoteSocketAddress());
+        try (socket;
+             BufferedReader reader = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+
+            CompletableFuture<?> pending = CompletableFuture.completedFuture(null);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String defaultId = String.valueOf(jobCounter.incrementAndGet());
+                JSONObject request;
+                SandboxJob job;
+                try {
+                    request = new JSONObject(line);
+                    job = SandboxJob.fromJson(request, defaultId);
+                } catch (JSONException | IllegalArgumentException e) {
+                    JSONObject error = new JSONObject();
+                    error.put("id", defaultId);
+                    error.put("status", "INVALID_JOB");
+                    error.put("error", e.getMessage());
+                    respond(writer, error);
+                    continue;
+                }
+
+                long accepted = System.nanoTime();
+                CompletableFuture<Void> result = CompletableFuture
+                        .supplyAsync(() -> workers != null ? dispatch(job, request, accepted) : runJob(job).toJson(),
+                                jobExecutor)
+                        .handle((r, failure) -> {
+                            // Auch ein abgebrochener Auftrag bekommt eine Antwort mit seiner id
+                            respond(writer, failure == null ? r : failed(job, failure));
+                            return null;
+                        });
+                pending = CompletableFuture.allOf(pending, result);
+            }
+            // Erst schließen wenn alle Antworten geschrieben sind
+            try {
+                pending.join();
+            } catch (CompletionException e) {
+                logger.error("ERROR: Antwort konnte nicht gesendet werden", e.getCause());
+            }
+        } catch (IOException e) {
+            logger.warn("Verbindung abgebrochen: " + e.getMessage());
+        }
+    }
+
+    private SandboxResult runJob(SandboxJob job) {
+        ThreadContext.put("logFile", logFile);
+        try {
+            logger.info("Starte Auftrag " + job.id() + " (" + job.mainClass() + ")");
+            SandboxResult result = SandboxRunner.run(job, true);
+            logger.info("Auftrag " + job.id() + " beendet: " + result.status() + " in " + result.durationMillis() + " ms");
+            return result;
+        } finally {
+            ThreadContext.remove("logFile");
+        }
+    }
+
+    private JSONObject dispatch(SandboxJob job, JSONObject request, long accepted) {
+        ThreadContext.put("logFile", logFile);
+        try {
+            request.put("id", job.id());
+            JSONObject response = workers.run(request, job, accepted);
+            logger.info("Auftrag " + job.id() + " beendet: " + response.optString("status") + " in "
+                    + response.optLong("durationMs") + " ms (Worker " + response.opt("worker") + ")");
+            return response;
+        } finally {
+            ThreadContext.remove("logFile");
+        }
+    }
+
+    private static JSONObject failed(SandboxJob job, Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause() : failure;
+        logger.error("ERROR: Auftrag " + job.id() + " ist ohne Ergebnis abgebrochen", cause);
+        JSONObject error = new JSONObject();
+        error.put("id", job.id());
+        error.put("status", SandboxResult.Status.FAILED.name());
+        error.put("error", cause.toString());
+        return error;
+    }
+
+    private static void respond(Writer writer, JSONObject response) {
+        synchronized (writer) {
+            try {
+                writer.write(response.toString());
+                writer.write('\n');
+                writer.flush();
+            } catch (IOException e) {
+                logger.warn("Konnte Antwort für Auftrag " + response.opt("id") + " nicht senden: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import javax.tools.ToolProvider;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Worker-JVM für den Supervisor-Modus (mode=worker siehe WorkerPool)
+ *
+ * Liest Aufträge als JSON-Lines von stdin und schreibt pro Auftrag eine Ergebniszeile
+ * mit RESULT_PREFIX nach stdout Es läuft immer nur ein Auftrag gleichzeitig Vor dem
+ * ersten Auftrag werden die Host-Klassen, die Policy und der Compiler geladen danach
+ * meldet sich der Worker mit READY
+ *
+ * stdout und stdin gehören allein dem Protokoll: System.out zeigt auf stderr und System.in
+ * ist leer Die Log-Konsole schreibt nach stderr weil der Supervisor den Worker mit
+ * -Dsandbox.console=SYSTEM_ERR startet (ohne die Property wird Log4j hier umgestellt)
+ * Jede Ergebniszeile trägt die seq ihrer Anfrage der Supervisor verwirft alles andere
+ * Auch wenn ein Auftrag mit einem Error abbricht gibt es eine Ergebniszeile
+ *
+ * Endet stdin (Supervisor recycelt den Worker oder ist weg) beendet sich der Prozess samt
+ * eventuell aufgegebener Threads
+ */
+final class SandboxWorker {
+
+    private static final Logger logger = LogManager.getLogger(SandboxWorker.class);
+
+    static final String READY = "@sandbox-ready";
+    static final String RESULT_PREFIX = "@sandbox-result ";
+    // Ziel des Console-Appenders in log4j2.xml
+    static final String CONSOLE_PROPERTY = "sandbox.console";
+
+    private SandboxWorker() {
+    }
+
+    /**
+     * Bedient Aufträge bis stdin endet und liefert den Exit-Code
+     */
+    static int run(String configPath) {
+        PrintStream protocol = System.out;
+        InputStream requests = System.in;
+        System.setOut(System.err);
+        System.setIn(new ByteArrayInputStream(new byte[0]));
+        if (!"SYSTEM_ERR".equals(System.getProperty(CONSOLE_PROPERTY))) {
+            // Von Hand gestartet: die Konsole ist schon auf stdout geöffnet Umkonfiguriert wird der
+            // Kontext dieses ClassLoaders (Configurator.reconfigure träfe den Default-Kontext)
+            System.setProperty(CONSOLE_PROPERTY, "SYSTEM_ERR");
+            ((LoggerContext) LogManager.getContext(SandboxWorker.class.getClassLoader(), false)).reconfigure();
+        }
+
+        long start = System.nanoTime();
+        PolicyRegistry.Handle policy = warm(configPath);
+        logger.info("Worker {} bereit nach {} ms", ProcessHandle.current().pid(),
+                (System.nanoTime() - start) / 1_000_000);
+        protocol.println(READY);
+        protocol.flush();
+
+        try (policy;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(requests, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JSONObject response;
+                Object seq = null;
+                try {
+                    JSONObject request = new JSONObject(line);
+                    seq = request.opt("seq");
+                    SandboxJob job = SandboxJob.fromJson(request, "worker");
+                    logger.info("Starte Auftrag {} ({})", job.id(), job.mainClass());
+                    SandboxResult result = SandboxRunner.run(job, true);
+                    logger.info("Auftrag {} beendet: {} in {} ms", job.id(), result.status(), result.durationMillis());
+                    response = result.toJson();
+                } catch (JSONException | IllegalArgumentException e) {
+                    response = new JSONObject();
+                    response.put("status", "INVALID_JOB");
+                    response.put("error", e.getMessage());
+                } catch (Throwable t) {
+                    // Ohne Antwort würde der Supervisor bis zur Frist warten
+                    logger.error("ERROR: Auftrag ist ohne Ergebnis abgebrochen", t);
+                    response = new JSONObject();
+                    response.put("status", SandboxResult.Status.FAILED.name());
+                    response.put("error", t.toString());
+                }
+                response.put("seq", seq);
+                // Eine Zeile in einem Aufruf der Supervisor liest zeilenweise
+                protocol.print(RESULT_PREFIX + response + "\n");
+                protocol.flush();
+            }
+        } catch (IOException e) {
+            logger.error("ERROR: Worker konnte keine Aufträge mehr lesen", e);
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Lädt was jeder Auftrag braucht damit der erste nicht den Kaltstart bezahlt
+     * Der Handle hält die geparste Policy für die Lebensdauer des Workers im Cache
+     */
+    private static PolicyRegistry.Handle warm(String configPath) {
+        PolicyRegistry.Handle policy = PolicyRegistry.shared().acquire(configPath);
+        OutputCapture.install();
+        RunWatchdog.shared();
+        try (BlockingClassLoader loader = new BlockingClassLoader(
+                ClassLoader.getSystemClassLoader(), ClassSource.empty(), configPath)) {
+            loader.loadClass(Object.class.getName());
+        } catch (IOException | ClassNotFoundException e) {
+            logger.debug("Worker warm-up: {}", e.toString());
+        }
+        // Quellverzeichnisse werden im Speicher kompiliert javac ist der größte Brocken
+        ToolProvider.getSystemJavaCompiler();
+        return policy;
+    }
+}
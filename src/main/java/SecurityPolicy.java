@@ -0,0 +1,139 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.function.Consumer;
+
+/**
+ * Eine geparste unveränderliche Sicherheitskonfiguration (config.json)
+ *
+ * Instanzen werden über PolicyRegistry zwischen ClassLoadern geteilt und nie verändert
+ * Bei einer Änderung der Datei entsteht eine neue Instanz
+ */
+final class SecurityPolicy {
+
+    private static final Logger logger = LogManager.getLogger(SecurityPolicy.class);
+
+    /** Keine Regeln nichts wird blockiert */
+    static final SecurityPolicy EMPTY = new SecurityPolicy("<none>", "", PolicyMatcher.EMPTY, MethodRules.DEFAULT,
+            RunLimits.NONE, ResourcePolicy.DEFAULT);
+
+    private final String source;
+    private final String contentHash;
+    private final PolicyMatcher matcher;
+    private final MethodRules methodRules;
+    private final RunLimits limits;
+    private final ResourcePolicy resources;
+
+    private SecurityPolicy(String source, String contentHash, PolicyMatcher matcher, MethodRules methodRules,
+                           RunLimits limits, ResourcePolicy resources) {
+        this.source = source;
+        this.contentHash = contentHash;
+        this.matcher = matcher;
+        this.methodRules = methodRules;
+        this.limits = limits;
+        this.resources = resources;
+    }
+
+    /**
+     * Parst den Inhalt einer config.json und kompiliert die Regeln einmalig in einen PolicyMatcher
+     */
+    static SecurityPolicy parse(byte[] content, String source) {
+        JSONObject config = new JSONObject(new String(content, StandardCharsets.UTF_8));
+
+        PolicyMatcher.Builder builder = PolicyMatcher.builder();
+        int blockedClasses = addRules(config, "blockedClasses", builder::blockClass);
+        int blockedPackages = addRules(config, "blockedPackages", builder::blockPackage);
+        int allowedClasses = addRules(config, "allowedClasses", builder::allowClass);
+        int allowedPackages = addRules(config, "allowedPackages", builder::allowPackage);
+        MethodRules.Builder methods = MethodRules.builder();
+        int blockedMethods = addRules(config, "blockedMethods", methods::block);
+
+        logger.info("Loaded " + blockedClasses + " blocked classes and "
+                + blockedPackages + " blocked packages from " + source);
+        if (allowedClasses + allowedPackages > 0) {
+            logger.info("Loaded " + allowedClasses + " allowed classes and "
+                    + allowedPackages + " allowed packages as exceptions");
+        }
+        if (blockedMethods > 0) {
+            logger.info("Loaded " + blockedMethods + " blocked methods (call sites are rewritten)");
+        }
+        RunLimits limits = RunLimits.fromJson(config);
+        if (!limits.isUnlimited()) {
+            logger.info("Run limits: " + limits);
+        }
+        ResourcePolicy resources = ResourcePolicy.fromJson(config);
+        if (!resources.equals(ResourcePolicy.DEFAULT)) {
+            logger.info("Resources: " + resources);
+        }
+        return new SecurityPolicy(source, hash(content), builder.build(), methods.build(), limits, resources);
+    }
+
+    /**
+     * Fügt alle Regeln eines JSON-Arrays hinzu Ungültige Muster werden übersprungen
+     * damit nicht die ganze Konfiguration verworfen wird
+     */
+    private static int addRules(JSONObject config, String key, Consumer<String> rule) {
+        if (!config.has(key)) {
+            return 0;
+        }
+        int count = 0;
+        JSONArray rules = config.getJSONArray(key);
+        for (int i = 0; i < rules.length(); i++) {
+            String pattern = rules.getString(i);
+            try {
+                rule.accept(pattern);
+                count++;
+            } catch (IllegalArgumentException e) {
+                logger.warn("WARNING: Ignoring invalid rule in '" + key + "': " + e.getMessage());
+            }
+        }
+        return count;
+    }
+
+    static String hash(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    boolean isBlocked(String className) {
+        return matcher.isBlocked(className);
+    }
+
+    /**
+     * Methoden deren Aufrufe beim Definieren einer Benutzerklasse umgeschrieben werden
+     */
+    MethodRules methodRules() {
+        return methodRules;
+    }
+
+    /**
+     * Budgets für jeden Lauf unter dieser Policy
+     */
+    RunLimits limits() {
+        return limits;
+    }
+
+    /**
+     * Regeln für Ressourcen der Benutzer und des Hosts
+     */
+    ResourcePolicy resources() {
+        return resources;
+    }
+
+    String source() {
+        return source;
+    }
+
+    String contentHash() {
+        return contentHash;
+    }
+}
@@ -0,0 +1,367 @@
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Vorgestartete Worker-JVMs für Läufe mit Prozess-Isolation (mode=supervisor)
+ *
+ * Jeder Worker ist ein eigener Prozess (mode=worker siehe SandboxWorker) mit geladenen
+ * Host-Klassen und Policy verbunden über stdin/stdout Ein Auftrag geht an den nächsten
+ * freien Worker (FIFO) ein Worker führt immer nur einen Auftrag gleichzeitig aus
+ *
+ * Recycelt wird ein Worker nach maxJobs Aufträgen, nach LIMIT_EXCEEDED (aufgegebene
+ * Threads laufen sonst im Worker weiter) und wenn er während eines Laufs endet (z.B.
+ * System.exit im Benutzercode Status WORKER_EXITED) Der Ersatz startet im Hintergrund
+ * ein Auftrag wartet also höchstens bis irgendein Worker frei ist
+ *
+ * Jede Anfrage trägt eine fortlaufende seq die der Worker in seiner Ergebniszeile
+ * zurückgibt Jede andere Zeile auf stdout oder eine Antwort mit falscher seq bzw. id ist
+ * ein Protokollfehler Antwortet ein Worker nicht innerhalb von wallTimeMs + graceMs +
+ * DEADLINE_MARGIN_MILLIS (Kompilieren und Laden zählen nicht zum Budget des Laufs) wird
+ * er hart beendet In beiden Fällen ist der Worker nicht mehr vertrauenswürdig und wird
+ * ersetzt
+ *
+ * Pro Auftrag kommen queueMs (Annahme bis ein Worker frei war) und dispatchMs (Umlauf
+ * durch den Worker minus durationMs des Laufs also Protokoll und Serialisierung) dazu
+ *
+ * Mit einem CDS-Archiv aus mode=cds starten Ersatz-Worker entsprechend schneller
+ */
+final class WorkerPool implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(WorkerPool.class);
+
+    static final int DEFAULT_MAX_JOBS = 100;
+    private static final long RESTART_DELAY_MILLIS = 1_000;
+    private static final long EXIT_WAIT_MILLIS = 5_000;
+    static final long DEADLINE_MARGIN_MILLIS = 30_000;
+
+    /**
+     * Momentaufnahme der Zähler Latenzen in Millisekunden
+     */
+    record Stats(long dispatched, long recycled, long exited, long killed, int idle, int workers,
+                 double avgQueueMs, double maxQueueMs, double avgDispatchMs) {
+
+        @Override
+        public String toString() {
+            return String.format("dispatched=%d recycled=%d exited=%d killed=%d idle=%d/%d queue avg=%.1f ms max=%.1f ms dispatch avg=%.1f ms",
+                    dispatched, recycled, exited, killed, idle, workers, avgQueueMs, maxQueueMs, avgDispatchMs);
+        }
+    }
+
+    /**
+     * Ein laufender Worker-Prozess Zugriff immer nur von dem Thread der ihn gerade hat
+     */
+    private static final class Worker {
+
+        final String name;
+        final Process process;
+        final BufferedWriter in;
+        final BufferedReader out;
+        int jobs;
+
+        Worker(String name, Process process) {
+            this.name = name;
+            this.process = process;
+            this.in = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+            this.out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Wartet auf READY false wenn der Prozess vorher endet Andere Zeilen vor dem
+         * Start (z.B. von der JVM selbst) werden geloggt und übersprungen
+         */
+        boolean awaitReady() throws IOException {
+            String line;
+            while ((line = out.readLine()) != null) {
+                if (line.equals(SandboxWorker.READY)) {
+                    return true;
+                }
+                logger.debug("{}: {}", name, line);
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return name + " (pid " + process.pid() + ")";
+        }
+    }
+
+    private final int size;
+    private final int maxJobs;
+    private final List<String> command;
+    private final LinkedBlockingQueue<Worker> idle = new LinkedBlockingQueue<>();
+    private final Set<Worker> all = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService starter;
+    // Ein Handle pro config für die Lebensdauer des Pools (Budgets für die Antwortfrist)
+    private final Map<String, PolicyRegistry.Handle> policies = new ConcurrentHashMap<>();
+    private final AtomicLong seqs = new AtomicLong();
+    private final AtomicInteger ids = new AtomicInteger();
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder recycled = new LongAdder();
+    private final LongAdder exited = new LongAdder();
+    private final LongAdder killed = new LongAdder();
+    private final LongAdder queueNanos = new LongAdder();
+    private final LongAdder dispatchNanos = new LongAdder();
+    private final AtomicLong maxQueueNanos = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * cdsArchive null = Worker ohne Archiv starten workerArgs gehen an Main im Worker
+     */
+    WorkerPool(int size, int maxJobs, Path cdsArchive, List<String> workerArgs) {
+        this.size = size;
+        this.maxJobs = maxJobs;
+        this.command = new ArrayList<>();
+        command.add(CdsArchive.javaExecutable());
+        if (cdsArchive != null) {
+            if (Files.isRegularFile(cdsArchive)) {
+                command.addAll(CdsArchive.launchOptions(cdsArchive));
+                command.add("-Xlog:cds=error:stderr");
+            } else {
+                logger.warn("WARNUNG: CDS-Archiv {} nicht gefunden Worker starten ohne", cdsArchive);
+            }
+        }
+        // stdout gehört allein dem Protokoll: Log-Konsole und JVM-Meldungen nach stderr
+        command.add("-D" + SandboxWorker.CONSOLE_PROPERTY + "=SYSTEM_ERR");
+        command.add("-Xlog:disable");
+        command.add("-Xlog:all=warning:stderr");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        command.add("mode=worker");
+        command.addAll(workerArgs);
+        // Ein Thread pro Worker damit alle gleichzeitig hochfahren
+        this.starter = Executors.newScheduledThreadPool(size,
+                Thread.ofPlatform().name("sandbox-worker-starter-", 0).daemon().factory());
+    }
+
+    /**
+     * Startet alle Worker im Hintergrund Aufträge warten bis der erste bereit ist
+     */
+    void start() {
+        logger.info("Worker pool: {} workers, recycled after {} jobs: {}", size, maxJobs, String.join(" ", command));
+        for (int i = 0; i < size; i++) {
+            starter.execute(this::spawn);
+        }
+    }
+
+    /**
+     * Führt den Auftrag im nächsten freien Worker aus und liefert dessen Ergebnis-JSON
+     * acceptedNanos ist der Zeitpunkt der Annahme (System.nanoTime) für queueMs
+     */
+    JSONObject run(JSONObject request, SandboxJob job, long acceptedNanos) {
+        String id = job.id();
+        long seq = seqs.incrementAndGet();
+        long deadlineMillis = deadlineMillis(job);
+        Worker worker;
+        try {
+            worker = idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return error(id, SandboxResult.Status.FAILED, "Interrupted while waiting for a worker");
+        }
+        long acquired = System.nanoTime();
+        long queued = acquired - acceptedNanos;
+
+        JSONObject response = null;
+        // null = Worker bleibt benutzbar sonst Grund für den Ersatz
+        String broken = null;
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> deadline = deadlineMillis <= 0 ? null : starter.schedule(() -> {
+            timedOut.set(true);
+            worker.process.destroyForcibly();
+        }, deadlineMillis, TimeUnit.MILLISECONDS);
+        try {
+            JSONObject framed = new JSONObject(request.toString());
+            framed.put("seq", seq);
+            worker.in.write(framed.toString());
+            worker.in.write('\n');
+            worker.in.flush();
+            String line = worker.out.readLine();
+            if (line == null) {
+                broken = timedOut.get() ? "no result within " + deadlineMillis + " ms" : exitMessage(worker);
+            } else if (!line.startsWith(SandboxWorker.RESULT_PREFIX)) {
+                broken = "protocol error: unexpected output " + abbreviate(line);
+            } else {
+                JSONObject result = new JSONObject(line.substring(SandboxWorker.RESULT_PREFIX.length()));
+                if (result.optLong("seq", -1) != seq || !id.equals(result.optString("id", id))) {
+                    broken = "protocol error: result for seq " + result.opt("seq") + " id " + result.opt("id")
+                            + " instead of seq " + seq + " id " + id;
+                } else {
+                    result.remove("seq");
+                    response = result;
+                }
+            }
+        } catch (IOException | JSONException e) {
+            broken = (timedOut.get() ? "no result within " + deadlineMillis + " ms" : exitMessage(worker))
+                    + ": " + e.getMessage();
+        } finally {
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
+        }
+        if (broken != null) {
+            response = error(id, timedOut.get() ? SandboxResult.Status.LIMIT_EXCEEDED
+                    : SandboxResult.Status.WORKER_EXITED, "Worker " + broken);
+        }
+        worker.jobs++;
+
+        long dispatch = Math.max(0, System.nanoTime() - acquired
+                - TimeUnit.MILLISECONDS.toNanos(response.optLong("durationMs")));
+        dispatched.increment();
+        queueNanos.add(queued);
+        dispatchNanos.add(dispatch);
+        maxQueueNanos.accumulateAndGet(queued, Math::max);
+        response.put("id", id);
+        response.put("worker", worker.process.pid());
+        response.put("queueMs", TimeUnit.NANOSECONDS.toMillis(queued));
+        response.put("dispatchMs", TimeUnit.NANOSECONDS.toMillis(dispatch));
+
+        if (broken != null && worker.process.isAlive()) {
+            // Antwortfrist überschritten oder fremde Ausgabe dem Worker ist nicht mehr zu trauen
+            killed.increment();
+            logger.warn("WARNUNG: {} wird bei Auftrag {} beendet: {}", worker, id, broken);
+            worker.process.destroyForcibly();
+            retire(worker);
+        } else if (broken != null) {
+            if (timedOut.get()) {
+                killed.increment();
+            } else {
+                exited.increment();
+            }
+            logger.warn("WARNUNG: {} ist während Auftrag {} beendet worden: {}", worker, id, broken);
+            retire(worker);
+        } else if (worker.jobs >= maxJobs
+                || SandboxResult.Status.LIMIT_EXCEEDED.name().equals(response.optString("status"))) {
+            recycled.increment();
+            logger.info("Recycle {} nach {} Aufträgen (Status {})", worker, worker.jobs, response.optString("status"));
+            retire(worker);
+        } else {
+            idle.add(worker);
+        }
+        logger.debug("Worker pool: {}", stats());
+        return response;
+    }
+
+    Stats stats() {
+        long n = dispatched.sum();
+        return new Stats(n, recycled.sum(), exited.sum(), killed.sum(), idle.size(), all.size(),
+                n == 0 ? 0 : queueNanos.sum() / 1e6 / n, maxQueueNanos.get() / 1e6,
+                n == 0 ? 0 : dispatchNanos.sum() / 1e6 / n);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        starter.shutdownNow();
+        for (Worker worker : all) {
+            worker.process.destroyForcibly();
+        }
+        policies.values().forEach(PolicyRegistry.Handle::close);
+    }
+
+    /**
+     * Frist für die Ergebniszeile 0 = ohne Frist (Policy und Auftrag ohne wallTimeMs)
+     */
+    private long deadlineMillis(SandboxJob job) {
+        PolicyRegistry.Handle policy = policies.computeIfAbsent(job.configPath(), PolicyRegistry.shared()::acquire);
+        RunLimits limits = policy.current().limits().narrow(job.limits());
+        return limits.wallMillis() <= 0 ? 0 : limits.wallMillis() + limits.graceMillis() + DEADLINE_MARGIN_MILLIS;
+    }
+
+    private void spawn() {
+        if (closed) {
+            return;
+        }
+        String name = "worker-" + ids.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            Process process = new ProcessBuilder(command)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            Worker worker = new Worker(name, process);
+            all.add(worker);
+            if (!worker.awaitReady()) {
+                all.remove(worker);
+                throw new IOException(exitMessage(worker));
+            }
+            logger.info("{} bereit nach {} ms", worker, (System.nanoTime() - start) / 1_000_000);
+            idle.add(worker);
+        } catch (IOException e) {
+            logger.error("ERROR: Konnte {} nicht starten neuer Versuch in {} ms", name, RESTART_DELAY_MILLIS, e);
+            if (!closed) {
+                starter.schedule(this::spawn, RESTART_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Beendet den Worker (stdin schließen dann notfalls hart) und startet Ersatz
+     */
+    private void retire(Worker worker) {
+        all.remove(worker);
+        starter.execute(this::spawn);
+        Thread.ofVirtual().name("sandbox-worker-retire").start(() -> {
+            try {
+                worker.in.close();
+                if (!worker.process.waitFor(EXIT_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    worker.process.destroyForcibly();
+                }
+            } catch (IOException e) {
+                worker.process.destroyForcibly();
+            } catch (InterruptedException e) {
+                worker.process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    private static String exitMessage(Worker worker) {
+        try {
+            if (worker.process.waitFor(EXIT_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                return "Worker process exited with code " + worker.process.exitValue();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "Worker process stopped responding";
+    }
+
+    private static String abbreviate(String line) {
+        return line.length() <= 200 ? line : line.substring(0, 200) + "...";
+    }
+
+    private static JSONObject error(String id, SandboxResult.Status status, String message) {
+        JSONObject error = new JSONObject();
+        error.put("id", id);
+        error.put("status", status.name());
+        error.put("error", message);
+        error.put("durationMs", 0);
+        return error;
+    }
+}